@@ -0,0 +1,30 @@
+package ru.terrakok.cicerone.benchmarks;
+
+import ru.terrakok.cicerone.Screen;
+
+/**
+ * Screen with the numbered key.
+ */
+public class BenchmarkScreen extends Screen {
+    private final int number;
+
+    public BenchmarkScreen(int number) {
+        this.number = number;
+        this.screenKey = "BenchmarkScreen_" + number;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Creates the array of screens with keys from 0 to {@code count - 1}.
+     */
+    public static BenchmarkScreen[] create(int count) {
+        BenchmarkScreen[] screens = new BenchmarkScreen[count];
+        for (int i = 0; i < count; i++) {
+            screens[i] = new BenchmarkScreen(i);
+        }
+        return screens;
+    }
+}
@@ -0,0 +1,54 @@
+package ru.terrakok.cicerone.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ru.terrakok.cicerone.Cicerone;
+import ru.terrakok.cicerone.NavigatorHolder;
+import ru.terrakok.cicerone.Router;
+
+/**
+ * Enqueue and drain cost of the command buffer with and without an active navigator.
+ */
+@State(Scope.Thread)
+public class CommandBufferBenchmark {
+    private static final int BATCH = 100;
+
+    private Router router;
+    private NavigatorHolder navigatorHolder;
+    private ConsumingNavigator navigator;
+    private BenchmarkScreen screen;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        Cicerone<Router> cicerone = Cicerone.create();
+        router = cicerone.getRouter();
+        navigatorHolder = cicerone.getNavigatorHolder();
+        navigator = new ConsumingNavigator(blackhole);
+        screen = new BenchmarkScreen(0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void withNavigator() {
+        navigatorHolder.setNavigator(navigator);
+        for (int i = 0; i < BATCH; i++) {
+            router.navigateTo(screen);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void withoutNavigator() {
+        navigatorHolder.removeNavigator();
+        for (int i = 0; i < BATCH; i++) {
+            router.navigateTo(screen);
+        }
+        // drain the pending queue, so it doesn't grow between invocations
+        navigatorHolder.setNavigator(navigator);
+    }
+}
@@ -0,0 +1,24 @@
+package ru.terrakok.cicerone.benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+import ru.terrakok.cicerone.Navigator;
+import ru.terrakok.cicerone.commands.Command;
+
+/**
+ * Navigator which only consumes commands, so benchmarks measure the command path itself.
+ */
+public class ConsumingNavigator implements Navigator {
+    private final Blackhole blackhole;
+
+    public ConsumingNavigator(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void applyCommands(Command[] commands) {
+        for (Command command : commands) {
+            blackhole.consume(command);
+        }
+    }
+}
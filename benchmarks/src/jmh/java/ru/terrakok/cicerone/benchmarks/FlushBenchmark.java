@@ -0,0 +1,49 @@
+package ru.terrakok.cicerone.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ru.terrakok.cicerone.Cicerone;
+import ru.terrakok.cicerone.NavigatorHolder;
+import ru.terrakok.cicerone.Router;
+
+/**
+ * Cost of {@link NavigatorHolder#setNavigator} as the backlog of pending commands grows.
+ */
+@State(Scope.Thread)
+public class FlushBenchmark {
+
+    @Param({"1", "10", "50", "200"})
+    public int backlog;
+
+    @Param({"false", "true"})
+    public boolean merge;
+
+    private Router router;
+    private NavigatorHolder navigatorHolder;
+    private ConsumingNavigator navigator;
+    private BenchmarkScreen[] screens;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        Cicerone<Router> cicerone = Cicerone.create();
+        cicerone.setMergePendingCommands(merge);
+        router = cicerone.getRouter();
+        navigatorHolder = cicerone.getNavigatorHolder();
+        navigator = new ConsumingNavigator(blackhole);
+        screens = BenchmarkScreen.create(backlog);
+    }
+
+    @Benchmark
+    public void setNavigator() {
+        navigatorHolder.removeNavigator();
+        for (BenchmarkScreen screen : screens) {
+            router.navigateTo(screen);
+        }
+        navigatorHolder.setNavigator(navigator);
+    }
+}
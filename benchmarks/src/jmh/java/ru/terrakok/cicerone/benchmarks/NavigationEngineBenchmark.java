@@ -0,0 +1,134 @@
+package ru.terrakok.cicerone.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import ru.terrakok.cicerone.Screen;
+import ru.terrakok.cicerone.android.NavigationEngine;
+import ru.terrakok.cicerone.commands.Back;
+import ru.terrakok.cicerone.commands.BackTo;
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.Forward;
+import ru.terrakok.cicerone.commands.Replace;
+import ru.terrakok.cicerone.commands.SwitchStack;
+
+/**
+ * Fragment navigators' {@link NavigationEngine} over the {@link StubFragmentBackend}
+ * with the back stack of the given depth.
+ */
+@State(Scope.Thread)
+public class NavigationEngineBenchmark {
+    private static final int STACKS = 5;
+
+    @Param({"1", "10", "50"})
+    public int depth;
+
+    private StubFragmentBackend backend;
+    private NavigationEngine<Screen> engine;
+    private NavigationEngine.CommandApplier applier;
+    private Command[] forwardAndBack;
+    private Command[] replace;
+    private Command[] backToMiddle;
+    private Command[][] switchStacks;
+    private int nextStack;
+
+    @Setup
+    public void setup() {
+        backend = new StubFragmentBackend();
+        engine = new NavigationEngine<>(backend);
+        applier = new NavigationEngine.CommandApplier() {
+            @Override
+            public void applyCommand(Command command) {
+                if (command instanceof Forward) {
+                    engine.forward(command, ((Forward) command).getScreen());
+                } else if (command instanceof Replace) {
+                    engine.replace(command, ((Replace) command).getScreen());
+                } else if (command instanceof BackTo) {
+                    Screen screen = ((BackTo) command).getScreen();
+                    if (screen == null || !engine.backTo(screen.getScreenKey())) {
+                        engine.backToRoot();
+                    }
+                } else if (command instanceof Back) {
+                    engine.back();
+                } else if (command instanceof SwitchStack) {
+                    engine.switchStack(command, ((SwitchStack) command).getScreen());
+                }
+            }
+
+            @Override
+            public void errorOnApplyCommand(Command command, RuntimeException error) {
+                throw error;
+            }
+        };
+
+        BenchmarkScreen[] screens = BenchmarkScreen.create(depth + 1);
+        Command[] chain = new Command[depth];
+        for (int i = 0; i < depth; i++) {
+            chain[i] = new Forward(screens[i]);
+        }
+        apply(chain);
+
+        forwardAndBack = new Command[]{new Forward(screens[depth]), new Back()};
+        replace = new Command[]{new Replace(screens[depth])};
+        BenchmarkScreen middle = screens[depth / 2];
+        backToMiddle = new Command[depth - depth / 2];
+        backToMiddle[0] = new BackTo(middle);
+        for (int i = 1; i < backToMiddle.length; i++) {
+            backToMiddle[i] = new Forward(screens[depth / 2 + i]);
+        }
+
+        BenchmarkScreen[] stackScreens = BenchmarkScreen.create(STACKS);
+        switchStacks = new Command[STACKS][];
+        for (int i = 0; i < STACKS; i++) {
+            switchStacks[i] = new Command[]{new SwitchStack(stackScreens[i])};
+        }
+    }
+
+    @TearDown
+    public void checkStacks() {
+        // every stack container is created once, switches only show them
+        if (backend.getCreatedStacksCount() > STACKS) {
+            throw new IllegalStateException("Stacks were recreated: " + backend.getCreatedStacksCount());
+        }
+    }
+
+    private void apply(Command[] commands) {
+        engine.beginBatch();
+        engine.applyPlan(engine.planCommands(commands), applier);
+    }
+
+    /**
+     * The planner folds this pair into an empty plan, so it is applied without planning
+     * to measure the fragment transactions of both commands.
+     */
+    @Benchmark
+    public void forwardAndBack() {
+        engine.beginBatch();
+        engine.applyPlan(forwardAndBack, applier);
+    }
+
+    @Benchmark
+    public void forwardAndBackPlanned() {
+        apply(forwardAndBack);
+    }
+
+    @Benchmark
+    public void replace() {
+        apply(replace);
+    }
+
+    @Benchmark
+    public void backToAndRestore() {
+        apply(backToMiddle);
+    }
+
+    @Benchmark
+    public void switchStack() {
+        apply(switchStacks[nextStack]);
+        nextStack = (nextStack + 1) % STACKS;
+    }
+}
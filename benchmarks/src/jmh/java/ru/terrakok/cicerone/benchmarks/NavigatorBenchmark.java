@@ -0,0 +1,64 @@
+package ru.terrakok.cicerone.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ru.terrakok.cicerone.commands.Back;
+import ru.terrakok.cicerone.commands.BackTo;
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.Forward;
+import ru.terrakok.cicerone.commands.Replace;
+import ru.terrakok.cicerone.memory.InMemoryNavigator;
+
+/**
+ * Command application against the {@link InMemoryNavigator} back stack of the given depth.
+ */
+@State(Scope.Thread)
+public class NavigatorBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int depth;
+
+    private InMemoryNavigator navigator;
+    private Command[] forwardAndBack;
+    private Command[] replace;
+    private Command[] backToMiddle;
+
+    @Setup
+    public void setup() {
+        BenchmarkScreen[] screens = BenchmarkScreen.create(depth + 1);
+        Command[] chain = new Command[depth];
+        for (int i = 0; i < depth; i++) {
+            chain[i] = new Forward(screens[i]);
+        }
+        navigator = new InMemoryNavigator();
+        navigator.applyCommands(chain);
+
+        forwardAndBack = new Command[]{new Forward(screens[depth]), new Back()};
+        replace = new Command[]{new Replace(screens[depth])};
+        BenchmarkScreen middle = screens[depth / 2];
+        backToMiddle = new Command[depth - depth / 2];
+        backToMiddle[0] = new BackTo(middle);
+        for (int i = 1; i < backToMiddle.length; i++) {
+            backToMiddle[i] = new Forward(screens[depth / 2 + i]);
+        }
+    }
+
+    @Benchmark
+    public void forwardAndBack() {
+        navigator.applyCommands(forwardAndBack);
+    }
+
+    @Benchmark
+    public void replace() {
+        navigator.applyCommands(replace);
+    }
+
+    @Benchmark
+    public void backToAndRestore() {
+        navigator.applyCommands(backToMiddle);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.terrakok.cicerone.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ru.terrakok.cicerone.Cicerone;
+import ru.terrakok.cicerone.Router;
+
+/**
+ * Throughput and allocation rate (see the gc profiler output) of {@link Router} methods
+ * with an active navigator.
+ */
+@State(Scope.Thread)
+public class RouterBenchmark {
+    private Router router;
+    private BenchmarkScreen screen;
+    private BenchmarkScreen[] chain;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        Cicerone<Router> cicerone = Cicerone.create();
+        cicerone.getNavigatorHolder().setNavigator(new ConsumingNavigator(blackhole));
+        router = cicerone.getRouter();
+        screen = new BenchmarkScreen(0);
+        chain = BenchmarkScreen.create(3);
+    }
+
+    @Benchmark
+    public void navigateTo() {
+        router.navigateTo(screen);
+    }
+
+    @Benchmark
+    public void replaceScreen() {
+        router.replaceScreen(screen);
+    }
+
+    @Benchmark
+    public void exit() {
+        router.exit();
+    }
+
+    @Benchmark
+    public void backTo() {
+        router.backTo(screen);
+    }
+
+    @Benchmark
+    public void backToRoot() {
+        router.backTo(null);
+    }
+
+    @Benchmark
+    public void newRootScreen() {
+        router.newRootScreen(screen);
+    }
+
+    @Benchmark
+    public void newChain() {
+        router.newChain(chain);
+    }
+
+    @Benchmark
+    public void finishChain() {
+        router.finishChain();
+    }
+}
@@ -0,0 +1,102 @@
+package ru.terrakok.cicerone.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ru.terrakok.cicerone.Cicerone;
+import ru.terrakok.cicerone.Router;
+import ru.terrakok.cicerone.Screen;
+import ru.terrakok.cicerone.android.NavigationEngine;
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.Forward;
+import ru.terrakok.cicerone.snapshot.ScreenCodec;
+import ru.terrakok.cicerone.snapshot.SnapshotReader;
+import ru.terrakok.cicerone.snapshot.SnapshotWriter;
+
+/**
+ * Encoding and decoding of {@link Cicerone} snapshots with the given count of pending commands
+ * and {@link NavigationEngine} snapshots with the lazy chain of the given depth.
+ * Snapshot sizes are checked by {@code SnapshotTest}.
+ */
+@State(Scope.Thread)
+public class SnapshotBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int depth;
+
+    private BenchmarkScreen[] screens;
+    private ScreenCodec codec;
+    private Cicerone<Router> cicerone;
+    private NavigationEngine<Screen> engine;
+    private byte[] ciceroneSnapshot;
+    private byte[] engineSnapshot;
+
+    @Setup
+    public void setup() {
+        screens = BenchmarkScreen.create(depth);
+        codec = new ScreenCodec() {
+            @Override
+            public void write(Screen screen, SnapshotWriter writer) {
+                writer.writeVarInt(((BenchmarkScreen) screen).getNumber());
+            }
+
+            @Override
+            public Screen read(SnapshotReader reader) {
+                return screens[reader.readVarInt()];
+            }
+        };
+
+        cicerone = Cicerone.create();
+        for (BenchmarkScreen screen : screens) {
+            cicerone.getRouter().navigateTo(screen);
+        }
+        ciceroneSnapshot = cicerone.createSnapshot(codec);
+
+        engine = new NavigationEngine<>(new StubFragmentBackend());
+        engine.setLazyChains(true);
+        Command[] chain = new Command[depth];
+        for (int i = 0; i < depth; i++) {
+            chain[i] = new Forward(screens[i]);
+        }
+        engine.beginBatch();
+        engine.applyPlan(chain, new NavigationEngine.CommandApplier() {
+            @Override
+            public void applyCommand(Command command) {
+                engine.forward(command, ((Forward) command).getScreen());
+            }
+
+            @Override
+            public void errorOnApplyCommand(Command command, RuntimeException error) {
+                throw error;
+            }
+        });
+        engineSnapshot = encodeEngine();
+    }
+
+    @Benchmark
+    public byte[] encodeCicerone() {
+        return cicerone.createSnapshot(codec);
+    }
+
+    @Benchmark
+    public Cicerone<Router> decodeCicerone() {
+        Cicerone<Router> restored = Cicerone.create();
+        restored.restoreSnapshot(ciceroneSnapshot, codec);
+        return restored;
+    }
+
+    @Benchmark
+    public byte[] encodeEngine() {
+        SnapshotWriter writer = new SnapshotWriter(codec);
+        engine.writeSnapshot(writer);
+        return writer.toByteArray();
+    }
+
+    @Benchmark
+    public void decodeEngine() {
+        engine.readSnapshot(new SnapshotReader(engineSnapshot, codec));
+    }
+}
@@ -0,0 +1,83 @@
+package ru.terrakok.cicerone.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import ru.terrakok.cicerone.Screen;
+import ru.terrakok.cicerone.android.FragmentBackend;
+import ru.terrakok.cicerone.commands.Command;
+
+/**
+ * Fragment backend keeping back stack entry names in a list.
+ * Transactions are executed at once, fragments are not created.
+ * Stack containers are counted when they are added.
+ */
+public class StubFragmentBackend implements FragmentBackend<Screen> {
+    private final ArrayList<String> entries = new ArrayList<>();
+    private final HashSet<String> stacks = new HashSet<>();
+    private int createdStacksCount;
+
+    @Override
+    public int getBackStackEntryCount() {
+        return entries.size();
+    }
+
+    @Override
+    public String getBackStackEntryName(int index) {
+        return entries.get(index);
+    }
+
+    @Override
+    public void executePendingTransactions() {
+    }
+
+    @Override
+    public void popBackStack() {
+        entries.remove(entries.size() - 1);
+    }
+
+    @Override
+    public void popBackStack(String name) {
+        int index = entries.lastIndexOf(name);
+        if (index != -1) {
+            entries.subList(index + 1, entries.size()).clear();
+        }
+    }
+
+    @Override
+    public void popBackStackToRoot() {
+        entries.clear();
+    }
+
+    @Override
+    public boolean isFragmentScreen(Screen screen) {
+        return true;
+    }
+
+    @Override
+    public Screen prepareFragment(Screen screen) {
+        return screen;
+    }
+
+    @Override
+    public void commitFragment(Command command,
+                               Screen screen,
+                               Screen fragment,
+                               boolean addToBackStack,
+                               boolean reorderingAllowed) {
+        if (addToBackStack) {
+            entries.add(screen.getScreenKey());
+        }
+    }
+
+    @Override
+    public void switchStack(Command command, Screen screen, String previousKey) {
+        if (stacks.add(screen.getScreenKey())) {
+            createdStacksCount++;
+        }
+    }
+
+    public int getCreatedStacksCount() {
+        return createdStacksCount;
+    }
+}
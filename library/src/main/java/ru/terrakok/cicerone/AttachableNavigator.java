@@ -0,0 +1,23 @@
+/*
+ * Created by Konstantin Tskhovrebov (aka @terrakok)
+ */
+
+package ru.terrakok.cicerone;
+
+/**
+ * Navigator which holds resources only while it is set to a {@link NavigatorHolder}
+ * (e.g. listeners of a fragment manager which outlives the navigator).
+ * Callbacks are called on the thread setting and removing the navigator, usually the main one.
+ */
+public interface AttachableNavigator extends Navigator {
+
+    /**
+     * Called when the navigator is set to the holder.
+     */
+    void onAttach();
+
+    /**
+     * Called when the navigator is removed from the holder or replaced with another one.
+     */
+    void onDetach();
+}
@@ -5,15 +5,26 @@
 package ru.terrakok.cicerone;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import ru.terrakok.cicerone.commands.Back;
 import ru.terrakok.cicerone.commands.Command;
 
 /**
  * BaseRouter is an abstract class to implement high-level navigation.
- * Extend it to add needed transition methods.
+ * Extend it to add needed transition methods.<br>
+ * Routers of nested containers (e.g. tabs) may be linked to the router of the outer container
+ * with {@link #setActiveChild(BaseRouter)}, so {@link #onBackPressed()} goes to the deepest visible container.
  */
 public abstract class BaseRouter {
+    // commands are immutable, so commands without a screen are shared
+    static final Back BACK = new Back();
+
     private CommandBuffer commandBuffer;
+    @Nullable
+    private volatile BaseRouter parent;
+    @Nullable
+    private volatile BaseRouter activeChild;
 
     public BaseRouter() {
         this.commandBuffer = new CommandBuffer();
@@ -32,4 +43,84 @@ public abstract class BaseRouter {
     protected void executeCommands(@NotNull Command... commands) {
         commandBuffer.executeCommands(commands);
     }
+
+    /**
+     * Sends single navigation command to {@link CommandBuffer}.
+     * Prefer it to {@link #executeCommands(Command...)} for single commands:
+     * it doesn't allocate the command array when the command is passed to the navigator at once.
+     *
+     * @param command navigation command to execute
+     */
+    protected void executeCommand(@NotNull Command command) {
+        commandBuffer.executeCommand(command);
+    }
+
+    /**
+     * Makes the router of the nested container the one which receives back presses of this router,
+     * e.g. when the container (tab) is shown.
+     *
+     * @param child router of the nested container or null if no nested container is shown
+     */
+    public void setActiveChild(@Nullable BaseRouter child) {
+        if (child != null) {
+            for (BaseRouter router = this; router != null; router = router.parent) {
+                if (router == child) {
+                    throw new IllegalArgumentException("Router can't be a child of itself or its children");
+                }
+            }
+            BaseRouter previousParent = child.parent;
+            if (previousParent != null && previousParent != this) {
+                previousParent.clearActiveChild(child);
+            }
+            child.parent = this;
+        }
+        activeChild = child;
+    }
+
+    /**
+     * Unlinks the router of the nested container if it is the active one, e.g. when the container is hidden.
+     * Does nothing if another container was already activated.
+     *
+     * @param child router of the nested container
+     */
+    public void clearActiveChild(@NotNull BaseRouter child) {
+        if (activeChild == child) {
+            activeChild = null;
+        }
+    }
+
+    /**
+     * @return router of the outer container or null
+     */
+    @Nullable
+    public BaseRouter getParent() {
+        return parent;
+    }
+
+    /**
+     * @return router of the shown nested container or null
+     */
+    @Nullable
+    public BaseRouter getActiveChild() {
+        return activeChild;
+    }
+
+    /**
+     * Handles the system back button: sends {@link Back} to the deepest active child router.
+     * If its navigator is a {@link StackNavigator} at the root screen (or it has no navigator)
+     * the back press bubbles up to the parent router, up to this one.<br>
+     * Call it on the main thread, e.g. from {@code Activity.onBackPressed()}.
+     */
+    public void onBackPressed() {
+        BaseRouter router = this;
+        BaseRouter child;
+        while ((child = router.activeChild) != null) {
+            router = child;
+        }
+        BaseRouter parent;
+        while (router != this && (parent = router.parent) != null && router.commandBuffer.isAtRoot()) {
+            router = parent;
+        }
+        router.executeCommand(BACK);
+    }
 }
@@ -0,0 +1,24 @@
+/*
+ * Created by Konstantin Tskhovrebov (aka @terrakok)
+ */
+
+package ru.terrakok.cicerone;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Source of ticks for the batching mode of the {@link Cicerone}.
+ * All commands sent to the router between two ticks are passed to the {@link Navigator}
+ * as a single command array.<br>
+ * In the app it is usually bound to frames (see {@link ru.terrakok.cicerone.android.FrameBatchScheduler}),
+ * in tests it may be a fake clock which runs ticks manually.
+ */
+public interface BatchScheduler {
+
+    /**
+     * Schedules the tick. The tick must be run once on the thread where the navigator lives.
+     *
+     * @param tick task passing collected commands to the navigator
+     */
+    void scheduleTick(@NotNull Runnable tick);
+}
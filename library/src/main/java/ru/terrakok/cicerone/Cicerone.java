@@ -5,6 +5,15 @@
 package ru.terrakok.cicerone;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Executor;
+
+import ru.terrakok.cicerone.commands.CommandOptimizer;
+import ru.terrakok.cicerone.metrics.NavigationMetricsListener;
+import ru.terrakok.cicerone.snapshot.ScreenCodec;
+import ru.terrakok.cicerone.snapshot.SnapshotReader;
+import ru.terrakok.cicerone.snapshot.SnapshotWriter;
 
 /**
  * Cicerone is the holder for other library components.
@@ -31,6 +40,117 @@ public class Cicerone<T extends BaseRouter> {
         return router;
     }
 
+    /**
+     * @return current count of command arrays waiting for an active navigator
+     */
+    public int getPendingCommandsCount() {
+        return router.getCommandBuffer().getPendingCommands().size();
+    }
+
+    /**
+     * @return current count of commands in all arrays waiting for an active navigator
+     */
+    public int getRetainedCommandsCount() {
+        return router.getCommandBuffer().getPendingCommands().getRetainedCommands();
+    }
+
+    /**
+     * @return max count of command arrays which were waiting for an active navigator at the same time
+     */
+    public int getPendingCommandsHighWaterMark() {
+        return router.getCommandBuffer().getPendingCommands().getHighWaterMark();
+    }
+
+    /**
+     * @return count of command arrays dropped by the {@link OverflowPolicy}
+     */
+    public long getDroppedCommandsCount() {
+        return router.getCommandBuffer().getPendingCommands().getDroppedCount();
+    }
+
+    /**
+     * Enables compaction of the commands pending while there is no active navigator.
+     * Redundant commands are dropped: screens chain changes before a new root and {@code Forward} followed by {@code Back}.
+     * Use it only if {@code Forward} opens screens in the same navigator (not activities).
+     *
+     * @param enabled true to compact pending commands
+     */
+    public void setPendingCommandsCompaction(boolean enabled) {
+        router.getCommandBuffer().setCompaction(enabled);
+    }
+
+    /**
+     * Enables the batching mode: commands sent between two ticks of the {@code batchScheduler}
+     * are passed to the navigator as one command array on the tick.
+     * E.g. {@code replaceScreen} and {@code navigateTo} called in the same frame become a single transition.
+     *
+     * @param batchScheduler source of ticks or null to disable batching
+     */
+    public void setBatchScheduler(@Nullable BatchScheduler batchScheduler) {
+        router.getCommandBuffer().setBatchScheduler(batchScheduler);
+    }
+
+    /**
+     * Sets the listener measuring how long commands wait for the navigator,
+     * sizes of command arrays and the pending queue depth.
+     * Pass the same listener to the navigator to measure apply time,
+     * see {@link ru.terrakok.cicerone.metrics.NavigationMetrics}.
+     *
+     * @param metricsListener listener or null to stop measuring
+     */
+    public void setMetricsListener(@Nullable NavigationMetricsListener metricsListener) {
+        router.getCommandBuffer().setMetricsListener(metricsListener);
+    }
+
+    /**
+     * Enables optimization of command arrays before passing them to the navigator,
+     * see {@link CommandOptimizer}.
+     * Use it only if {@code Forward} and {@code Replace} open screens in the same navigator (not activities).
+     *
+     * @param enabled true to optimize command arrays
+     */
+    public void setCommandOptimization(boolean enabled) {
+        router.getCommandBuffer().setOptimization(enabled);
+    }
+
+    /**
+     * Enables passing of all commands pending while there is no active navigator
+     * to the new navigator as one command array.
+     * So the navigator prepares the transition once instead of once per pending array.
+     *
+     * @param enabled true to merge pending commands
+     */
+    public void setMergePendingCommands(boolean enabled) {
+        router.getCommandBuffer().setMergePending(enabled);
+    }
+
+    /**
+     * Saves commands waiting for the navigator to the compact binary form,
+     * e.g. to put it to the saved state bundle. Only the standard commands are supported.
+     * Call it on the main thread.
+     *
+     * @param screenCodec writer of screens of the commands
+     * @return snapshot restored by {@link #restoreSnapshot(byte[], ScreenCodec)}
+     */
+    @NotNull
+    public byte[] createSnapshot(@NotNull ScreenCodec screenCodec) {
+        SnapshotWriter writer = new SnapshotWriter(screenCodec);
+        router.getCommandBuffer().writeSnapshot(writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Executes saved commands again in the same order, as if they were sent by the router.
+     * Call it on the main thread before the navigator is set.
+     *
+     * @param snapshot    result of {@link #createSnapshot(ScreenCodec)}
+     * @param screenCodec reader of screens of the commands
+     * @throws IllegalArgumentException if the snapshot is malformed, has trailing bytes or an unsupported version
+     */
+    public void restoreSnapshot(@NotNull byte[] snapshot, @NotNull ScreenCodec screenCodec) {
+        router.getCommandBuffer().readSnapshot(new SnapshotReader(snapshot, screenCodec));
+    }
+
     /**
      * Creates the Cicerone instance with the default {@link Router router}
      */
@@ -47,4 +167,64 @@ public class Cicerone<T extends BaseRouter> {
     public static <T extends BaseRouter> Cicerone<T> create(@NotNull T customRouter) {
         return new Cicerone<>(customRouter);
     }
+
+    /**
+     * Creates the Cicerone instance with the default {@link Router router}
+     * which can be called from any thread.
+     *
+     * @param mainExecutor executor passing commands to the navigator, e.g. posting to the main thread
+     */
+    @NotNull
+    public static Cicerone<Router> create(@NotNull Executor mainExecutor) {
+        return create(new Router(), mainExecutor);
+    }
+
+    /**
+     * Creates the Cicerone instance with the custom router which can be called from any thread.
+     * Commands are queued without locks and passed to the navigator on the {@code mainExecutor}.
+     *
+     * @param customRouter the custom router extending {@link BaseRouter}
+     * @param mainExecutor executor passing commands to the navigator, e.g. posting to the main thread
+     */
+    @NotNull
+    public static <T extends BaseRouter> Cicerone<T> create(@NotNull T customRouter,
+                                                           @NotNull Executor mainExecutor) {
+        customRouter.getCommandBuffer().setMainExecutor(mainExecutor);
+        return new Cicerone<>(customRouter);
+    }
+
+    /**
+     * Creates the Cicerone instance with the custom router and the limited pending commands queue.
+     * Commands are pending while there is no active navigator.
+     *
+     * @param customRouter   the custom router extending {@link BaseRouter}
+     * @param capacity       max count of pending command arrays
+     * @param overflowPolicy what to do when the queue is full
+     */
+    @NotNull
+    public static <T extends BaseRouter> Cicerone<T> create(@NotNull T customRouter,
+                                                           int capacity,
+                                                           @NotNull OverflowPolicy overflowPolicy) {
+        customRouter.getCommandBuffer().setPendingCapacity(capacity, overflowPolicy);
+        return new Cicerone<>(customRouter);
+    }
+
+    /**
+     * Creates the Cicerone instance with the custom router which can be called from any thread
+     * and the limited pending commands queue.
+     *
+     * @param customRouter   the custom router extending {@link BaseRouter}
+     * @param mainExecutor   executor passing commands to the navigator, e.g. posting to the main thread
+     * @param capacity       max count of pending command arrays
+     * @param overflowPolicy what to do when the queue is full
+     */
+    @NotNull
+    public static <T extends BaseRouter> Cicerone<T> create(@NotNull T customRouter,
+                                                           @NotNull Executor mainExecutor,
+                                                           int capacity,
+                                                           @NotNull OverflowPolicy overflowPolicy) {
+        customRouter.getCommandBuffer().setMainExecutor(mainExecutor);
+        customRouter.getCommandBuffer().setPendingCapacity(capacity, overflowPolicy);
+        return new Cicerone<>(customRouter);
+    }
 }
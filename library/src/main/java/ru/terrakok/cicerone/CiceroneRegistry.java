@@ -0,0 +1,297 @@
+/*
+ * Created by Konstantin Tskhovrebov (aka @terrakok)
+ */
+
+package ru.terrakok.cicerone;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds {@link Cicerone} instances of nested navigation containers (e.g. tabs) by container tag.<br>
+ * {@link #get(String)} is safe to call from any thread, a container is created once on the first request.
+ * Containers without an active navigator may be evicted when there are too many of them
+ * or they weren't used for too long, see {@link #setMaxDetachedContainers(int)} and {@link #setMaxIdleTime}.
+ * Don't keep routers of evicted containers: the next {@link #get(String)} creates a new container.
+ *
+ * @param <T> type of router
+ */
+public class CiceroneRegistry<T extends BaseRouter> {
+
+    /**
+     * Creates the container for the tag.
+     */
+    public interface Factory<T extends BaseRouter> {
+        @NotNull
+        Cicerone<T> create(@NotNull String containerTag);
+    }
+
+    private final Factory<T> factory;
+    private final ConcurrentHashMap<String, Container<T>> containers = new ConcurrentHashMap<>();
+    private volatile int maxDetachedContainers = Integer.MAX_VALUE;
+    private volatile long maxIdleNanos;
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    public CiceroneRegistry(@NotNull Factory<T> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Creates the registry of containers with the default {@link Router router}.
+     */
+    @NotNull
+    public static CiceroneRegistry<Router> create() {
+        return new CiceroneRegistry<>(new Factory<Router>() {
+            @NotNull
+            @Override
+            public Cicerone<Router> create(@NotNull String containerTag) {
+                return Cicerone.create();
+            }
+        });
+    }
+
+    /**
+     * Returns the container for the tag creating it if there is no one.
+     *
+     * @param containerTag container tag
+     * @return container Cicerone
+     */
+    @NotNull
+    public Cicerone<T> get(@NotNull String containerTag) {
+        Container<T> container = containers.get(containerTag);
+        if (container == null) {
+            synchronized (this) {
+                container = containers.get(containerTag);
+                if (container == null) {
+                    container = new Container<>(containerTag, factory.create(containerTag));
+                    containers.put(containerTag, container);
+                }
+            }
+            trim();
+        } else {
+            container.lastAccessedAt = System.nanoTime();
+        }
+        return container.cicerone;
+    }
+
+    /**
+     * Releases the container.
+     *
+     * @param containerTag container tag
+     * @return removed container Cicerone or null if there is no one
+     */
+    @Nullable
+    public Cicerone<T> remove(@NotNull String containerTag) {
+        Container<T> container = containers.remove(containerTag);
+        return container != null ? container.cicerone : null;
+    }
+
+    /**
+     * Limits count of containers without an active navigator,
+     * the least recently used ones are evicted when a new container is created or on {@link #trim()}.
+     *
+     * @param maxDetachedContainers max count of containers without a navigator
+     */
+    public void setMaxDetachedContainers(int maxDetachedContainers) {
+        if (maxDetachedContainers <= 0) {
+            throw new IllegalArgumentException("Max count must be positive: " + maxDetachedContainers);
+        }
+        this.maxDetachedContainers = maxDetachedContainers;
+    }
+
+    /**
+     * Sets the time after which a container without an active navigator is evicted on {@link #trim()}.
+     * The time is counted from the last {@link #get(String)} or navigator removal.
+     *
+     * @param time max idle time or 0 to keep idle containers
+     * @param unit time unit
+     */
+    public void setMaxIdleTime(long time, @NotNull TimeUnit unit) {
+        maxIdleNanos = unit.toNanos(time);
+    }
+
+    /**
+     * Evicts idle containers and the least recently used ones over the limit.
+     * Containers with an active navigator are never evicted.
+     * Call it e.g. from {@code onTrimMemory}.
+     *
+     * @return count of evicted containers
+     */
+    public synchronized int trim() {
+        long now = System.nanoTime();
+        long maxIdle = maxIdleNanos;
+        List<Container<T>> detached = new ArrayList<>();
+        int evicted = 0;
+        for (Container<T> container : containers.values()) {
+            if (container.isAttached()) continue;
+
+            if (maxIdle > 0 && now - container.getLastUsedAt() > maxIdle) {
+                if (containers.remove(container.tag, container)) evicted++;
+            } else {
+                detached.add(container);
+            }
+        }
+
+        int excess = detached.size() - maxDetachedContainers;
+        if (excess > 0) {
+            Collections.sort(detached, new Comparator<Container<T>>() {
+                @Override
+                public int compare(Container<T> c1, Container<T> c2) {
+                    long diff = c1.getLastUsedAt() - c2.getLastUsedAt();
+                    return diff < 0 ? -1 : (diff == 0 ? 0 : 1);
+                }
+            });
+            for (int i = 0; i < excess; i++) {
+                Container<T> container = detached.get(i);
+                if (containers.remove(container.tag, container)) evicted++;
+            }
+        }
+        evictedCount.addAndGet(evicted);
+        return evicted;
+    }
+
+    public int size() {
+        return containers.size();
+    }
+
+    /**
+     * @return count of containers evicted since the registry creation
+     */
+    public long getEvictedCount() {
+        return evictedCount.get();
+    }
+
+    /**
+     * @return state of every container
+     */
+    @NotNull
+    public List<ContainerStats> getStats() {
+        long now = System.nanoTime();
+        List<ContainerStats> stats = new ArrayList<>(containers.size());
+        for (Map.Entry<String, Container<T>> entry : containers.entrySet()) {
+            Container<T> container = entry.getValue();
+            Cicerone<T> cicerone = container.cicerone;
+            stats.add(new ContainerStats(
+                    entry.getKey(),
+                    container.isAttached(),
+                    cicerone.getPendingCommandsCount(),
+                    cicerone.getRetainedCommandsCount(),
+                    cicerone.getPendingCommandsHighWaterMark(),
+                    cicerone.getDroppedCommandsCount(),
+                    TimeUnit.NANOSECONDS.toMillis(now - container.getLastUsedAt())
+            ));
+        }
+        return stats;
+    }
+
+    private static final class Container<T extends BaseRouter> {
+        final String tag;
+        final Cicerone<T> cicerone;
+        volatile long lastAccessedAt;
+
+        Container(@NotNull String tag, @NotNull Cicerone<T> cicerone) {
+            this.tag = tag;
+            this.cicerone = cicerone;
+            this.lastAccessedAt = System.nanoTime();
+        }
+
+        boolean isAttached() {
+            return cicerone.getRouter().getCommandBuffer().hasNavigator();
+        }
+
+        long getLastUsedAt() {
+            long removedAt = cicerone.getRouter().getCommandBuffer().getNavigatorRemovedAt();
+            return removedAt != 0 && removedAt - lastAccessedAt > 0 ? removedAt : lastAccessedAt;
+        }
+    }
+
+    /**
+     * Snapshot of the container state.
+     */
+    public static final class ContainerStats {
+        private final String containerTag;
+        private final boolean attached;
+        private final int pendingCommandsCount;
+        private final int retainedCommandsCount;
+        private final int pendingCommandsHighWaterMark;
+        private final long droppedCommandsCount;
+        private final long idleTimeMillis;
+
+        ContainerStats(@NotNull String containerTag,
+                       boolean attached,
+                       int pendingCommandsCount,
+                       int retainedCommandsCount,
+                       int pendingCommandsHighWaterMark,
+                       long droppedCommandsCount,
+                       long idleTimeMillis) {
+            this.containerTag = containerTag;
+            this.attached = attached;
+            this.pendingCommandsCount = pendingCommandsCount;
+            this.retainedCommandsCount = retainedCommandsCount;
+            this.pendingCommandsHighWaterMark = pendingCommandsHighWaterMark;
+            this.droppedCommandsCount = droppedCommandsCount;
+            this.idleTimeMillis = idleTimeMillis;
+        }
+
+        @NotNull
+        public String getContainerTag() {
+            return containerTag;
+        }
+
+        /**
+         * @return true if the container has an active navigator
+         */
+        public boolean isAttached() {
+            return attached;
+        }
+
+        /**
+         * @return count of pending command arrays
+         */
+        public int getPendingCommandsCount() {
+            return pendingCommandsCount;
+        }
+
+        /**
+         * @return count of commands retained by the pending arrays
+         */
+        public int getRetainedCommandsCount() {
+            return retainedCommandsCount;
+        }
+
+        public int getPendingCommandsHighWaterMark() {
+            return pendingCommandsHighWaterMark;
+        }
+
+        public long getDroppedCommandsCount() {
+            return droppedCommandsCount;
+        }
+
+        /**
+         * @return time since the last access or navigator removal
+         */
+        public long getIdleTimeMillis() {
+            return idleTimeMillis;
+        }
+
+        @Override
+        public String toString() {
+            return containerTag
+                    + (attached ? " attached" : " detached")
+                    + ", pending: " + pendingCommandsCount
+                    + " (" + retainedCommandsCount + " commands)"
+                    + ", high water mark: " + pendingCommandsHighWaterMark
+                    + ", dropped: " + droppedCommandsCount
+                    + ", idle: " + idleTimeMillis + " ms";
+        }
+    }
+}
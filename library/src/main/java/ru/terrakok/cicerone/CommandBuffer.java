@@ -7,44 +7,424 @@ package ru.terrakok.cicerone;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.CommandOptimizer;
+import ru.terrakok.cicerone.metrics.NavigationMetricsListener;
+import ru.terrakok.cicerone.snapshot.SnapshotReader;
+import ru.terrakok.cicerone.snapshot.SnapshotWriter;
 
 /**
  * Passes navigation command to an active {@link Navigator}
- * or stores it in the pending commands queue to pass it later.
+ * or stores it in the pending commands queue to pass it later.<br>
+ * Commands may be sent from any thread: they are put to a lock-free queue
+ * and drained by a single consumer. If a main executor is set the queue is drained on it,
+ * otherwise it is drained on the calling thread.
+ * While there is no navigator the consumer keeps commands in {@link PendingCommands}.<br>
+ * In the batching mode the queue is drained on ticks of the {@link BatchScheduler}
+ * and all commands received since the previous tick are passed as one array.
  */
 class CommandBuffer implements NavigatorHolder {
-    private Navigator navigator;
-    private Queue<Command[]> pendingCommands = new LinkedList<>();
+    private static final int SNAPSHOT_MARKER = 'C';
+
+    private volatile Navigator navigator;
+    private volatile Executor mainExecutor;
+    private volatile BatchScheduler batchScheduler;
+    private volatile boolean compaction;
+    private volatile boolean mergePending;
+    private volatile boolean optimization;
+    private final Queue<Incoming> incomingCommands = new ConcurrentLinkedQueue<>();
+    // count of incoming command arrays, a queue size would be O(n)
+    private final AtomicInteger incomingCount = new AtomicInteger();
+    private final PendingCommands pendingCommands = new PendingCommands();
+    private final AtomicInteger drainRequests = new AtomicInteger();
+    private final Command[] singleCommand = new Command[1];
+
+    // time of the last navigator removal, 0 if it was never removed
+    private volatile long navigatorRemovedAt;
+    private volatile NavigationMetricsListener metricsListener;
+    // enqueue time of the oldest pending command array, used by the consumer only
+    private long pendingSince;
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Sets the executor which will pass commands to the {@link Navigator}.
+     * Usually it posts to the main thread.
+     *
+     * @param mainExecutor executor or null to pass commands on the calling thread
+     */
+    void setMainExecutor(@Nullable Executor mainExecutor) {
+        this.mainExecutor = mainExecutor;
+    }
+
+    /**
+     * Enables the batching mode.
+     *
+     * @param batchScheduler source of ticks or null to pass every command array separately
+     */
+    void setBatchScheduler(@Nullable BatchScheduler batchScheduler) {
+        this.batchScheduler = batchScheduler;
+    }
+
+    /**
+     * Enables compaction of commands pending while there is no navigator.
+     *
+     * @param compaction true to reduce pending commands, see {@link PendingCommands}
+     */
+    void setCompaction(boolean compaction) {
+        this.compaction = compaction;
+    }
+
+    /**
+     * Enables merging of all pending commands into the single array
+     * when a navigator is set.
+     *
+     * @param mergePending true to pass pending commands as one array
+     */
+    void setMergePending(boolean mergePending) {
+        this.mergePending = mergePending;
+    }
+
+    /**
+     * Enables optimization of command arrays before passing them to the navigator.
+     *
+     * @param optimization true to pass arrays through {@link CommandOptimizer}
+     */
+    void setOptimization(boolean optimization) {
+        this.optimization = optimization;
+    }
+
+    /**
+     * Sets the listener measuring wait time, batch sizes and the pending queue depth.
+     *
+     * @param metricsListener listener or null to stop measuring
+     */
+    void setMetricsListener(@Nullable NavigationMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Limits the pending commands queue.
+     *
+     * @param capacity       max count of pending command arrays
+     * @param overflowPolicy what to do when the queue is full
+     */
+    void setPendingCapacity(int capacity, @NotNull OverflowPolicy overflowPolicy) {
+        pendingCommands.setCapacity(capacity, overflowPolicy);
+    }
+
+    @NotNull
+    PendingCommands getPendingCommands() {
+        return pendingCommands;
+    }
 
     @Override
     public void setNavigator(@Nullable Navigator navigator) {
+        Navigator previous = this.navigator;
+        if (previous != navigator) {
+            detach(previous);
+            if (navigator instanceof AttachableNavigator) {
+                ((AttachableNavigator) navigator).onAttach();
+            }
+        }
         this.navigator = navigator;
-        while (!pendingCommands.isEmpty()) {
-            if (navigator != null) {
-                executeCommands(pendingCommands.poll());
-            } else break;
+        if (navigator != null) {
+            scheduleDrain();
+        } else {
+            navigatorRemovedAt = System.nanoTime();
         }
     }
 
     @Override
     public void removeNavigator() {
+        Navigator previous = this.navigator;
         this.navigator = null;
+        navigatorRemovedAt = System.nanoTime();
+        detach(previous);
+    }
+
+    private static void detach(@Nullable Navigator navigator) {
+        if (navigator instanceof AttachableNavigator) {
+            ((AttachableNavigator) navigator).onDetach();
+        }
+    }
+
+    boolean hasNavigator() {
+        return navigator != null;
+    }
+
+    /**
+     * Must be called on the main thread.
+     *
+     * @return true if there is no navigator or the {@link StackNavigator} is at the root
+     * and there are no commands waiting to be passed to it
+     */
+    boolean isAtRoot() {
+        Navigator current = navigator;
+        if (current == null) return true;
+
+        return current instanceof StackNavigator
+                && drainRequests.get() == 0
+                && incomingCommands.isEmpty()
+                && pendingCommands.isEmpty()
+                && ((StackNavigator) current).isAtRoot();
+    }
+
+    /**
+     * Writes commands waiting for the navigator: pending arrays and arrays which aren't drained yet.
+     * Must be called on the main thread.
+     */
+    void writeSnapshot(@NotNull SnapshotWriter writer) {
+        List<Command[]> arrays = new ArrayList<>(pendingCommands.getArrays());
+        for (Incoming incoming : incomingCommands) {
+            arrays.add(incoming.commands);
+        }
+        writer.writeByte(SNAPSHOT_MARKER);
+        writer.writeVarInt(arrays.size());
+        for (Command[] commands : arrays) {
+            writer.writeVarInt(commands.length);
+            for (Command command : commands) {
+                writer.writeCommand(command);
+            }
+        }
+    }
+
+    /**
+     * Reads command arrays written by {@link #writeSnapshot} and executes them in the same order.
+     * The whole snapshot is read and checked before the first array is executed.
+     */
+    void readSnapshot(@NotNull SnapshotReader reader) {
+        if (reader.readByte() != SNAPSHOT_MARKER) {
+            throw new IllegalArgumentException("Not a command buffer snapshot");
+        }
+        Command[][] arrays = new Command[reader.readCount()][];
+        for (int i = 0; i < arrays.length; i++) {
+            Command[] commands = new Command[reader.readCount()];
+            for (int j = 0; j < commands.length; j++) {
+                commands[j] = reader.readCommand();
+            }
+            arrays[i] = commands;
+        }
+        reader.requireEnd();
+        for (Command[] commands : arrays) {
+            executeCommands(commands);
+        }
+    }
+
+    /**
+     * @return {@link System#nanoTime()} of the last navigator removal or 0
+     */
+    long getNavigatorRemovedAt() {
+        return navigatorRemovedAt;
     }
 
     /**
      * Passes {@code commands} to the {@link Navigator} if it available.
      * Else puts it to the pending commands queue to pass it later.
+     * Safe to call from any thread.
+     *
      * @param commands navigation command array
+     * @throws IllegalStateException if there is no navigator and the limited queue with
+     *                               {@link OverflowPolicy#FAIL_FAST} is full
      */
     void executeCommands(@NotNull Command[] commands) {
-        if (navigator != null) {
-            navigator.applyCommands(commands);
+        checkRoom();
+        if (tryTakeDrain()) {
+            applyDirectly(commands);
+        } else {
+            offerIncoming(commands);
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Same as {@link #executeCommands(Command[])} for the single command.
+     * If the command can be passed to the navigator at once no array is allocated.
+     *
+     * @param command navigation command
+     */
+    void executeCommand(@NotNull Command command) {
+        checkRoom();
+        if (tryTakeDrain()) {
+            singleCommand[0] = command;
+            try {
+                applyDirectly(singleCommand);
+            } finally {
+                singleCommand[0] = null;
+            }
         } else {
-            pendingCommands.add(commands);
+            offerIncoming(new Command[]{command});
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Takes the consumer role if commands can be passed to the navigator on the calling thread
+     * without queueing.
+     */
+    private boolean tryTakeDrain() {
+        return mainExecutor == null
+                && batchScheduler == null
+                && navigator != null
+                && incomingCommands.isEmpty()
+                && drainRequests.compareAndSet(0, 1);
+    }
+
+    private void applyDirectly(@NotNull Command[] commands) {
+        Navigator current = navigator;
+        if (current != null && pendingCommands.isEmpty()) {
+            try {
+                pass(current, commands, 0);
+            } catch (RuntimeException e) {
+                // commands queued while the navigator was running must not wait for the next call
+                drain();
+                throw e;
+            }
+        } else {
+            offerIncoming(commands == singleCommand ? new Command[]{commands[0]} : commands);
+        }
+        drain();
+    }
+
+    private void scheduleDrain() {
+        if (drainRequests.getAndIncrement() == 0) {
+            BatchScheduler scheduler = batchScheduler;
+            Executor executor = mainExecutor;
+            if (scheduler != null) {
+                scheduler.scheduleTick(drainTask);
+            } else if (executor != null) {
+                executor.execute(drainTask);
+            } else {
+                drain();
+            }
+        }
+    }
+
+    /**
+     * Single consumer loop. Only one drain is running at a time,
+     * requests received while it runs are served by the same loop.
+     */
+    private void drain() {
+        int missed = 1;
+        try {
+            do {
+                Navigator current;
+                while ((current = navigator) != null && !pendingCommands.isEmpty()) {
+                    long since = pendingSince;
+                    Command[] commands = mergePending ? pendingCommands.pollAll() : pendingCommands.poll();
+                    onPendingChanged();
+                    pass(current, commands, since);
+                }
+                Incoming incoming;
+                while ((incoming = pollIncoming()) != null) {
+                    current = navigator;
+                    if (current != null && pendingCommands.isEmpty()) {
+                        pass(current, incoming.commands, incoming.since);
+                    } else {
+                        if (pendingCommands.isEmpty()) pendingSince = incoming.since;
+                        pendingCommands.add(incoming.commands, compaction);
+                        onPendingChanged();
+                    }
+                }
+                missed = drainRequests.addAndGet(-missed);
+            } while (missed != 0);
+        } catch (RuntimeException e) {
+            drainRequests.set(0);
+            if ((mainExecutor != null || batchScheduler != null)
+                    && (!incomingCommands.isEmpty() || !pendingCommands.isEmpty())) {
+                scheduleDrain();
+            }
+            throw e;
+        }
+    }
+
+    private void pass(@NotNull Navigator navigator, @NotNull Command[] commands, long since) {
+        if (optimization) {
+            commands = CommandOptimizer.optimize(commands);
+            if (commands.length == 0) return;
+        }
+        NavigationMetricsListener listener = metricsListener;
+        if (listener != null) {
+            listener.onBatchPassed(commands.length, since == 0 ? 0 : System.nanoTime() - since);
+        }
+        navigator.applyCommands(commands);
+    }
+
+    private void checkRoom() {
+        if (navigator == null) {
+            pendingCommands.checkRoom(incomingCount.get());
+        }
+    }
+
+    private void offerIncoming(@NotNull Command[] commands) {
+        long since = metricsListener != null ? System.nanoTime() : 0;
+        incomingCount.incrementAndGet();
+        incomingCommands.offer(new Incoming(commands, since));
+    }
+
+    private void onPendingChanged() {
+        if (pendingCommands.isEmpty()) {
+            pendingSince = 0;
+        }
+        NavigationMetricsListener listener = metricsListener;
+        if (listener != null) {
+            listener.onPendingDepthChanged(pendingCommands.size());
+        }
+    }
+
+    @Nullable
+    private Incoming pollIncoming() {
+        Incoming first = incomingCommands.poll();
+        if (first == null) return null;
+        incomingCount.decrementAndGet();
+        if (batchScheduler == null) return first;
+
+        Incoming next = incomingCommands.poll();
+        if (next == null) return first;
+
+        List<Command[]> batch = new ArrayList<>();
+        batch.add(first.commands);
+        int count = first.commands.length;
+        long since = first.since;
+        do {
+            incomingCount.decrementAndGet();
+            batch.add(next.commands);
+            count += next.commands.length;
+            // producers may be preempted between taking the time and offering the array
+            if (next.since != 0 && (since == 0 || next.since - since < 0)) since = next.since;
+        } while ((next = incomingCommands.poll()) != null);
+
+        Command[] result = new Command[count];
+        int position = 0;
+        for (Command[] commands : batch) {
+            System.arraycopy(commands, 0, result, position, commands.length);
+            position += commands.length;
+        }
+        return new Incoming(result, since);
+    }
+
+    /**
+     * Command array with its enqueue time.
+     */
+    private static final class Incoming {
+        final Command[] commands;
+        // System.nanoTime() on enqueue or 0 if there was no metrics listener
+        final long since;
+
+        Incoming(@NotNull Command[] commands, long since) {
+            this.commands = commands;
+            this.since = since;
         }
     }
 }
@@ -15,7 +15,8 @@ import ru.terrakok.cicerone.commands.Command;
 public interface Navigator {
 
     /**
-     * Performs transition described by the navigation command
+     * Performs transition described by the navigation command.<br>
+     * The array may be reused after the call, so don't keep it and don't modify it.
      *
      * @param commands the navigation command array to apply per single transaction
      */
@@ -0,0 +1,36 @@
+/*
+ * Created by Konstantin Tskhovrebov (aka @terrakok)
+ */
+
+package ru.terrakok.cicerone;
+
+/**
+ * Defines what to do with a command array when the pending commands queue is full.
+ * See {@link Cicerone#create(BaseRouter, int, OverflowPolicy)}.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Drops the oldest pending command array.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Drops the new command array.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Drops everything pending before the last new root (e.g. {@link Router#newRootScreen}).
+     * If the root is the oldest pending array the next one is dropped or the new one if there is no next one,
+     * if there is no root the oldest command array is dropped.
+     */
+    COLLAPSE_TO_LAST_ROOT,
+
+    /**
+     * Throws {@link IllegalStateException} to the router caller, the command array isn't queued.
+     * Arrays are counted before compaction, and if several threads fill the last place at once
+     * the extra array is dropped and the exception is thrown on the thread passing commands to the navigator.
+     */
+    FAIL_FAST
+}
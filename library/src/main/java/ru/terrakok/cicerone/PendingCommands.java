@@ -0,0 +1,336 @@
+/*
+ * Created by Konstantin Tskhovrebov (aka @terrakok)
+ */
+
+package ru.terrakok.cicerone;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import ru.terrakok.cicerone.commands.Back;
+import ru.terrakok.cicerone.commands.BackTo;
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.Forward;
+import ru.terrakok.cicerone.commands.Replace;
+
+/**
+ * Queue of command arrays waiting for a {@link Navigator}.
+ * It is used only by the single consumer of the {@link CommandBuffer}.<br>
+ * With compaction enabled every added array is reduced against the queued ones:
+ * <ul>
+ * <li>a new root ({@link BackTo} to root followed by {@link Replace}) drops the commands queued before it
+ * if they are only {@link Forward}, {@link Replace} and {@link BackTo}: a {@link Back} may exit from the root
+ * and custom commands are unknown, so nothing is dropped across them;</li>
+ * <li>{@link Forward} followed by {@link Back} is dropped.</li>
+ * </ul>
+ * So the queue size depends on the resulting chain, not on the number of calls.
+ * Compaction assumes that commands change the screens chain only,
+ * don't enable it if {@link Forward} starts activities.<br>
+ * The queue may be limited, then the {@link OverflowPolicy} is applied to arrays which don't fit.
+ */
+class PendingCommands {
+    private final ArrayDeque<Command[]> queue = new ArrayDeque<>();
+    private volatile int capacity = Integer.MAX_VALUE;
+    private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    // written only by the consumer, read from any thread
+    private volatile int depth;
+    private volatile int retainedCommands;
+    private volatile int highWaterMark;
+    private volatile long droppedCount;
+    // count of commands in the queue, used by the consumer only
+    private int commandCount;
+
+    /**
+     * Limits the queue size.
+     *
+     * @param capacity       max count of pending command arrays
+     * @param overflowPolicy what to do when the queue is full
+     */
+    void setCapacity(int capacity, @NotNull OverflowPolicy overflowPolicy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    int size() {
+        return depth;
+    }
+
+    /**
+     * @return pending arrays from the oldest one, must not be modified
+     */
+    @NotNull
+    Collection<Command[]> getArrays() {
+        return queue;
+    }
+
+    /**
+     * @return count of commands in all pending arrays
+     */
+    int getRetainedCommands() {
+        return retainedCommands;
+    }
+
+    int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    long getDroppedCount() {
+        return droppedCount;
+    }
+
+    @Nullable
+    Command[] poll() {
+        Command[] commands = pollFirst();
+        publishSize();
+        return commands;
+    }
+
+    /**
+     * Removes all command arrays from the queue and merges them into the single one.
+     *
+     * @return merged command array or null if the queue is empty
+     */
+    @Nullable
+    Command[] pollAll() {
+        if (queue.size() <= 1) return poll();
+
+        int count = 0;
+        for (Command[] commands : queue) {
+            count += commands.length;
+        }
+        Command[] result = new Command[count];
+        int position = 0;
+        Command[] commands;
+        while ((commands = queue.poll()) != null) {
+            System.arraycopy(commands, 0, result, position, commands.length);
+            position += commands.length;
+        }
+        commandCount = 0;
+        publishSize();
+        return result;
+    }
+
+    void clear() {
+        clearQueue();
+        publishSize();
+    }
+
+    /**
+     * Puts the command array to the end of the queue.
+     *
+     * @param commands   navigation command array
+     * @param compaction reduce the queue to the normal form
+     */
+    void add(@NotNull Command[] commands, boolean compaction) {
+        if (compaction) {
+            commands = compact(commands);
+        }
+        if (commands.length != 0 && (queue.size() < capacity || makeRoom(commands))) {
+            queue.add(commands);
+            commandCount += commands.length;
+        }
+
+        publishSize();
+        if (depth > highWaterMark) {
+            highWaterMark = depth;
+        }
+    }
+
+    /**
+     * Checks the room for a new command array before it is queued, so with {@link OverflowPolicy#FAIL_FAST}
+     * the producer gets the exception instead of the consumer. Compaction isn't taken into account.
+     *
+     * @param incoming count of queued arrays which aren't added yet
+     */
+    void checkRoom(int incoming) {
+        if (overflowPolicy == OverflowPolicy.FAIL_FAST && depth + incoming >= capacity) {
+            throw new IllegalStateException("Pending commands queue is full, capacity: " + capacity);
+        }
+    }
+
+    private void publishSize() {
+        depth = queue.size();
+        retainedCommands = commandCount;
+    }
+
+    @Nullable
+    private Command[] pollFirst() {
+        Command[] commands = queue.poll();
+        if (commands != null) {
+            commandCount -= commands.length;
+        }
+        return commands;
+    }
+
+    private void clearQueue() {
+        queue.clear();
+        commandCount = 0;
+    }
+
+    /**
+     * Applies the overflow policy to the full queue.
+     *
+     * @return true if the new command array should be added
+     */
+    private boolean makeRoom(@NotNull Command[] commands) {
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                droppedCount++;
+                return false;
+            case COLLAPSE_TO_LAST_ROOT:
+                return collapseToLastRoot(commands);
+            case FAIL_FAST:
+                throw new IllegalStateException("Pending commands queue is full, capacity: " + capacity);
+            case DROP_OLDEST:
+            default:
+                dropOldest();
+                return true;
+        }
+    }
+
+    private void dropOldest() {
+        if (pollFirst() != null) {
+            droppedCount++;
+        }
+    }
+
+    /**
+     * @return true if the new command array should be added
+     */
+    private boolean collapseToLastRoot(@NotNull Command[] commands) {
+        if (hasNewRoot(commands)) {
+            droppedCount += queue.size();
+            clearQueue();
+            return true;
+        }
+
+        int index = 0;
+        int lastRoot = -1;
+        for (Command[] pending : queue) {
+            if (hasNewRoot(pending)) lastRoot = index;
+            index++;
+        }
+        if (lastRoot == -1) {
+            // nothing to collapse
+            dropOldest();
+            return true;
+        }
+        if (lastRoot == 0) {
+            if (queue.size() == 1) {
+                // only the root is pending, it is more important than the new array
+                droppedCount++;
+                return false;
+            }
+            // keep the root and drop the oldest array after it
+            Command[] root = pollFirst();
+            dropOldest();
+            queue.addFirst(root);
+            commandCount += root.length;
+            return true;
+        }
+
+        for (int i = 0; i < lastRoot; i++) {
+            pollFirst();
+        }
+        droppedCount += lastRoot;
+        return true;
+    }
+
+    @NotNull
+    private Command[] compact(@NotNull Command[] commands) {
+        int start = 0;
+        for (int i = commands.length - 2; i >= 0; i--) {
+            if (isNewRoot(commands[i], commands[i + 1])) {
+                if (isChainOnly(commands, i) && isQueueChainOnly()) {
+                    clearQueue();
+                    start = i;
+                }
+                break;
+            }
+        }
+
+        List<Command> result = new ArrayList<>(commands.length - start);
+        for (int i = start; i < commands.length; i++) {
+            Command command = commands[i];
+            if (command instanceof Back) {
+                if (!result.isEmpty()) {
+                    if (result.get(result.size() - 1) instanceof Forward) {
+                        result.remove(result.size() - 1);
+                        continue;
+                    }
+                } else if (removeLastForward()) {
+                    continue;
+                }
+            }
+            result.add(command);
+        }
+
+        if (result.size() == commands.length) return commands;
+        return result.toArray(new Command[result.size()]);
+    }
+
+    /**
+     * Removes the {@link Forward} command from the end of the queue if it is there.
+     */
+    private boolean removeLastForward() {
+        Command[] last = queue.peekLast();
+        if (last == null || last.length == 0 || !(last[last.length - 1] instanceof Forward)) {
+            return false;
+        }
+
+        queue.pollLast();
+        commandCount--;
+        if (last.length > 1) {
+            queue.addLast(Arrays.copyOf(last, last.length - 1));
+        }
+        return true;
+    }
+
+    private boolean isQueueChainOnly() {
+        for (Command[] pending : queue) {
+            if (!isChainOnly(pending, pending.length)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the first {@code count} commands only change the screens chain,
+     * so a new root overrides them
+     */
+    private static boolean isChainOnly(@NotNull Command[] commands, int count) {
+        for (int i = 0; i < count; i++) {
+            Command command = commands[i];
+            if (!(command instanceof Forward || command instanceof Replace || command instanceof BackTo)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasNewRoot(@NotNull Command[] commands) {
+        for (int i = 0; i < commands.length - 1; i++) {
+            if (isNewRoot(commands[i], commands[i + 1])) return true;
+        }
+        return false;
+    }
+
+    private static boolean isNewRoot(@NotNull Command command, @NotNull Command next) {
+        return command instanceof BackTo
+                && ((BackTo) command).getScreen() == null
+                && next instanceof Replace;
+    }
+}
@@ -12,6 +12,7 @@ import ru.terrakok.cicerone.commands.BackTo;
 import ru.terrakok.cicerone.commands.Command;
 import ru.terrakok.cicerone.commands.Forward;
 import ru.terrakok.cicerone.commands.Replace;
+import ru.terrakok.cicerone.commands.SwitchStack;
 
 /**
  * Router is the class for high-level navigation.
@@ -20,6 +21,8 @@ import ru.terrakok.cicerone.commands.Replace;
  * Extend it if you need some tricky navigation.
  */
 public class Router extends BaseRouter {
+    // commands are immutable, so commands without a screen are shared
+    private static final BackTo BACK_TO_ROOT = new BackTo(null);
 
     public Router() {
         super();
@@ -31,7 +34,7 @@ public class Router extends BaseRouter {
      * @param screen screen
      */
     public void navigateTo(@NotNull Screen screen) {
-        executeCommands(new Forward(screen));
+        executeCommand(new Forward(screen));
     }
 
     /**
@@ -41,7 +44,7 @@ public class Router extends BaseRouter {
      */
     public void newRootScreen(@NotNull Screen screen) {
         executeCommands(
-                new BackTo(null),
+                BACK_TO_ROOT,
                 new Replace(screen)
         );
     }
@@ -55,7 +58,7 @@ public class Router extends BaseRouter {
      * @param screen screen
      */
     public void replaceScreen(@NotNull Screen screen) {
-        executeCommands(new Replace(screen));
+        executeCommand(new Replace(screen));
     }
 
     /**
@@ -66,7 +69,7 @@ public class Router extends BaseRouter {
      * @param screen screen
      */
     public void backTo(@Nullable Screen screen) {
-        executeCommands(new BackTo(screen));
+        executeCommand(screen == null ? BACK_TO_ROOT : new BackTo(screen));
     }
 
     /**
@@ -87,7 +90,7 @@ public class Router extends BaseRouter {
      */
     public void newRootChain(@NotNull Screen... screens) {
         Command[] commands = new Command[screens.length + 1];
-        commands[0] = new BackTo(null);
+        commands[0] = BACK_TO_ROOT;
         if (screens.length > 0) {
             commands[1] = new Replace(screens[0]);
             for (int i = 1; i < screens.length; i++) {
@@ -102,10 +105,8 @@ public class Router extends BaseRouter {
      * It's mostly used to finish the application or close a supplementary navigation chain.
      */
     public void finishChain() {
-        executeCommands(
-                new BackTo(null),
-                new Back()
-        );
+        // the array isn't shared, so a navigator modifying it can't break other routers
+        executeCommands(BACK_TO_ROOT, BACK);
     }
 
     /**
@@ -114,7 +115,17 @@ public class Router extends BaseRouter {
      * the processing of the {@link Back} command in a {@link Navigator} implementation.
      */
     public void exit() {
-        executeCommands(new Back());
+        executeCommand(BACK);
+    }
+
+    /**
+     * Show the stack (e.g. a tab) of the container screen.
+     * Stacks aren't destroyed on switch, so each one keeps its screens chain.
+     *
+     * @param stackScreen container screen of the stack, its screen key is the stack key
+     */
+    public void switchStack(@NotNull Screen stackScreen) {
+        executeCommand(new SwitchStack(stackScreen));
     }
 
 }
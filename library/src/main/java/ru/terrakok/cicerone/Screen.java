@@ -2,14 +2,43 @@ package ru.terrakok.cicerone;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Screen is class for description application screen.
  */
 public abstract class Screen {
-    protected String screenKey = getClass().getCanonicalName();
+    // screen class -> default screen key, so the class name is resolved once per class
+    private static final ConcurrentHashMap<Class<?>, String> CLASS_KEYS = new ConcurrentHashMap<>();
+
+    protected String screenKey = getClassKey(getClass());
 
     @NotNull
     public String getScreenKey() {
         return screenKey;
     }
+
+    /**
+     * Returns the default screen key of the class: its canonical name
+     * or the binary name for classes without the canonical one (e.g. anonymous).
+     * Keys are cached, so the same string instance is returned for the class.
+     *
+     * @param screenClass screen class
+     * @return default screen key
+     */
+    @NotNull
+    protected static String getClassKey(@NotNull Class<?> screenClass) {
+        String key = CLASS_KEYS.get(screenClass);
+        if (key == null) {
+            key = screenClass.getCanonicalName();
+            if (key == null) {
+                key = screenClass.getName();
+            }
+            String previous = CLASS_KEYS.putIfAbsent(screenClass, key);
+            if (previous != null) {
+                key = previous;
+            }
+        }
+        return key;
+    }
 }
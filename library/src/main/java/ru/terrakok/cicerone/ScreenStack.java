@@ -0,0 +1,121 @@
+/*
+ * Created by Konstantin Tskhovrebov (aka @terrakok)
+ */
+
+package ru.terrakok.cicerone;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Stack of screen keys with the key index.<br>
+ * Push, pop and search of the last entry with the key are O(1),
+ * so {@code BackTo} costs only the pops. Duplicate keys are allowed:
+ * every entry links to the previous entry with the same key.
+ * Null key is allowed for entries without a name (e.g. fragment transactions added to the back stack by the app).
+ */
+public class ScreenStack {
+    private String[] keys = new String[16];
+    // position of the previous entry with the same key or -1
+    private int[] previousSameKey = new int[16];
+    // key -> position of the last entry with the key
+    private final HashMap<String, Integer> lastPositions = new HashMap<>();
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void push(@Nullable String key) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            previousSameKey = Arrays.copyOf(previousSameKey, size * 2);
+        }
+        Integer previous = lastPositions.put(key, size);
+        keys[size] = key;
+        previousSameKey[size] = previous == null ? -1 : previous;
+        size++;
+    }
+
+    @Nullable
+    public String pop() {
+        if (size == 0) {
+            throw new IllegalStateException("Screen stack is empty");
+        }
+        size--;
+        String key = keys[size];
+        int previous = previousSameKey[size];
+        if (previous == -1) {
+            lastPositions.remove(key);
+        } else {
+            lastPositions.put(key, previous);
+        }
+        keys[size] = null;
+        return key;
+    }
+
+    @Nullable
+    public String peek() {
+        return size == 0 ? null : keys[size - 1];
+    }
+
+    @Nullable
+    public String get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", size: " + size);
+        }
+        return keys[position];
+    }
+
+    /**
+     * @return position of the last entry with the key or -1
+     */
+    public int lastIndexOf(@Nullable String key) {
+        Integer position = lastPositions.get(key);
+        return position == null ? -1 : position;
+    }
+
+    public boolean contains(@Nullable String key) {
+        return lastPositions.containsKey(key);
+    }
+
+    /**
+     * Pops entries until the stack size is {@code newSize}.
+     */
+    public void truncate(int newSize) {
+        if (newSize < 0) {
+            throw new IllegalArgumentException("Size must not be negative: " + newSize);
+        }
+        while (size > newSize) {
+            pop();
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        lastPositions.clear();
+        size = 0;
+    }
+
+    /**
+     * @return copy of keys from the bottom to the top
+     */
+    @NotNull
+    public List<String> toList() {
+        return new ArrayList<>(Arrays.asList(keys).subList(0, size));
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+}
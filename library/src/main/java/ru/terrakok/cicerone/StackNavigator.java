@@ -0,0 +1,20 @@
+/*
+ * Created by Konstantin Tskhovrebov (aka @terrakok)
+ */
+
+package ru.terrakok.cicerone;
+
+/**
+ * Navigator which knows whether its screens chain is at the root screen.
+ * Lets {@link BaseRouter#onBackPressed()} pass a back press to the parent router
+ * instead of the navigator of a nested router which can't go back.
+ */
+public interface StackNavigator extends Navigator {
+
+    /**
+     * Called on the main thread.
+     *
+     * @return true if there is no screen above the root one
+     */
+    boolean isAtRoot();
+}
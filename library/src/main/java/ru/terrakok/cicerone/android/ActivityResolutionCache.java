@@ -0,0 +1,94 @@
+package ru.terrakok.cicerone.android;
+
+import android.content.Intent;
+import android.content.pm.PackageManager;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches results of {@link Intent#resolveActivity(PackageManager)} for activity screens,
+ * so repeated navigation to the same activity doesn't query the package manager.<br>
+ * Intents are matched by {@link Intent#filterEquals(Intent)}: component or action, data, type and categories.
+ * Extras don't affect the result.<br>
+ * Results may become stale when packages are installed, removed or disabled,
+ * call {@link #invalidate()} then (e.g. from a receiver of {@link Intent#ACTION_PACKAGE_CHANGED}).
+ * One cache may be shared by navigators of all activities.
+ */
+public class ActivityResolutionCache {
+
+    private final LinkedHashMap<IntentFilterKey, Boolean> results;
+
+    /**
+     * @param maxSize max count of cached intents, the least recently used one is evicted
+     */
+    public ActivityResolutionCache(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max size must be positive: " + maxSize);
+        }
+        results = new LinkedHashMap<IntentFilterKey, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<IntentFilterKey, Boolean> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param intent         activity intent
+     * @param packageManager package manager used on a cache miss
+     * @return true if there is an activity to start with the intent
+     */
+    public boolean canResolve(@NotNull Intent intent, @NotNull PackageManager packageManager) {
+        IntentFilterKey key = new IntentFilterKey(intent);
+        Boolean result;
+        synchronized (this) {
+            result = results.get(key);
+        }
+        if (result == null) {
+            result = intent.resolveActivity(packageManager) != null;
+            synchronized (this) {
+                results.put(new IntentFilterKey(intent.cloneFilter()), result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the result for the intent.
+     *
+     * @param intent activity intent
+     */
+    public synchronized void invalidate(@NotNull Intent intent) {
+        results.remove(new IntentFilterKey(intent));
+    }
+
+    /**
+     * Forgets all results.
+     */
+    public synchronized void invalidate() {
+        results.clear();
+    }
+
+    private static final class IntentFilterKey {
+        private final Intent intent;
+        private final int hashCode;
+
+        IntentFilterKey(@NotNull Intent intent) {
+            this.intent = intent;
+            this.hashCode = intent.filterHashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof IntentFilterKey && intent.filterEquals(((IntentFilterKey) o).intent));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
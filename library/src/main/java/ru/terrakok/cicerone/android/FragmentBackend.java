@@ -0,0 +1,86 @@
+/*
+ * Created by Konstantin Tskhovrebov (aka @terrakok)
+ */
+
+package ru.terrakok.cicerone.android;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import ru.terrakok.cicerone.Screen;
+import ru.terrakok.cicerone.commands.Command;
+
+/**
+ * Fragment manager operations used by the {@link NavigationEngine}.
+ * Implemented by the predefined navigators for the framework and the support fragment managers.
+ *
+ * @param <F> type of the prepared fragment
+ */
+public interface FragmentBackend<F> {
+
+    int getBackStackEntryCount();
+
+    @Nullable
+    String getBackStackEntryName(int index);
+
+    void executePendingTransactions();
+
+    /**
+     * Pops the top back stack entry.
+     */
+    void popBackStack();
+
+    /**
+     * Pops all back stack entries above the last one with the {@code name}.
+     *
+     * @param name back stack entry name
+     */
+    void popBackStack(@NotNull String name);
+
+    /**
+     * Pops all back stack entries.
+     */
+    void popBackStackToRoot();
+
+    /**
+     * @param screen screen
+     * @return true if the screen is shown by a fragment, false if it starts an activity
+     */
+    boolean isFragmentScreen(@NotNull Screen screen);
+
+    /**
+     * Creates the fragment (or its description) for the screen before the back stack is changed.
+     *
+     * @param screen fragment screen
+     * @return prepared fragment passed to {@link #commitFragment}
+     */
+    @NotNull
+    F prepareFragment(@NotNull Screen screen);
+
+    /**
+     * Commits the transaction replacing the container content with the prepared fragment.
+     *
+     * @param command           current navigation command. Will be only Forward or Replace
+     * @param screen            fragment screen
+     * @param fragment          result of {@link #prepareFragment(Screen)}
+     * @param addToBackStack    true to add the transaction to the back stack with the screen key
+     * @param reorderingAllowed true if the transaction is a part of a planned command array,
+     *                          the backend may commit it with reordering allowed
+     */
+    void commitFragment(@NotNull Command command,
+                        @NotNull Screen screen,
+                        @NotNull F fragment,
+                        boolean addToBackStack,
+                        boolean reorderingAllowed);
+
+    /**
+     * Shows the stack container fragment with the screen key as a tag and hides the previous one.
+     * The fragment is created and added to the container if there is no fragment with the tag.
+     * The transaction is committed and executed with all pending ones, keeping the commit order.
+     *
+     * @param command     current navigation command
+     * @param screen      stack container screen
+     * @param previousKey key of the shown stack or null if it is unknown (e.g. after the activity recreation)
+     */
+    void switchStack(@NotNull Command command, @NotNull Screen screen, @Nullable String previousKey);
+}
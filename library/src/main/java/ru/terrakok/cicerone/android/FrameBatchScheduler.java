@@ -0,0 +1,35 @@
+package ru.terrakok.cicerone.android;
+
+import android.view.Choreographer;
+
+import org.jetbrains.annotations.NotNull;
+
+import ru.terrakok.cicerone.BatchScheduler;
+
+/**
+ * {@link BatchScheduler} which runs ticks on the next frame,
+ * so commands sent during one frame are applied as a single transition.<br>
+ * Create it on the main thread.
+ */
+public class FrameBatchScheduler implements BatchScheduler {
+
+    private final Choreographer choreographer;
+
+    public FrameBatchScheduler() {
+        this(Choreographer.getInstance());
+    }
+
+    public FrameBatchScheduler(@NotNull Choreographer choreographer) {
+        this.choreographer = choreographer;
+    }
+
+    @Override
+    public void scheduleTick(@NotNull final Runnable tick) {
+        choreographer.postFrameCallback(new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                tick.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,598 @@
+/*
+ * Created by Konstantin Tskhovrebov (aka @terrakok)
+ */
+
+package ru.terrakok.cicerone.android;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+
+import ru.terrakok.cicerone.Screen;
+import ru.terrakok.cicerone.ScreenStack;
+import ru.terrakok.cicerone.commands.Back;
+import ru.terrakok.cicerone.commands.BackTo;
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.Forward;
+import ru.terrakok.cicerone.commands.Replace;
+import ru.terrakok.cicerone.metrics.NavigationMetricsListener;
+import ru.terrakok.cicerone.snapshot.SnapshotReader;
+import ru.terrakok.cicerone.snapshot.SnapshotWriter;
+
+/**
+ * Platform independent part of the fragment navigators.<br>
+ * Keeps the local copy of the fragments back stack, resolves {@link BackTo}, plans and applies command arrays.
+ * The fragment manager is used through the {@link FragmentBackend}, so the engine works on a plain JVM.
+ *
+ * @param <F> type of the prepared fragment
+ */
+public class NavigationEngine<F> {
+
+    /**
+     * Applies single commands of the planned array.
+     */
+    public interface CommandApplier {
+
+        void applyCommand(@NotNull Command command);
+
+        void errorOnApplyCommand(@NotNull Command command, @NotNull RuntimeException error);
+    }
+
+    private static final int SNAPSHOT_MARKER = 'N';
+
+    private final FragmentBackend<F> backend;
+    private final ScreenStack localStackCopy = new ScreenStack();
+    private boolean stackCopied;
+    // set on a back stack change not caused by the engine, the local stack copy is checked before the next commands
+    private boolean backStackChanged;
+    // back stack changes committed by the engine and not reported by the fragment manager yet
+    private int expectedChanges;
+    private boolean deferredFlush;
+    // true if committed transactions may be not executed yet
+    private boolean hasPendingTransactions;
+    // true if transactions of previous command arrays must be executed before the next fragment transaction
+    private boolean flushBeforeTransaction;
+    // true while a planned array of several commands is applied
+    private boolean reorderingAllowed;
+    private boolean lazyChains;
+    // commands of stack entries which aren't committed to the fragment manager yet, by stack position
+    private final ArrayList<Command> lazyCommands = new ArrayList<>();
+    private int lazyCount;
+    // root screen replace which isn't committed yet
+    @Nullable
+    private Command lazyRoot;
+    // the plan being applied and the position of the current command
+    @Nullable
+    private Command[] plan;
+    private int planIndex;
+    @Nullable
+    private NavigationMetricsListener metricsListener;
+    // key of the shown stack container
+    @Nullable
+    private String currentStackKey;
+
+    public NavigationEngine(@NotNull FragmentBackend<F> backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Local copy of the fragments back stack: screen keys from the bottom to the top.
+     */
+    @NotNull
+    public ScreenStack getStack() {
+        return localStackCopy;
+    }
+
+    /**
+     * Enables the deferred mode: pending fragment transactions aren't executed at the start of every command array.
+     * The engine relies on its local stack copy and executes them only before a fragment transaction
+     * if there are transactions of previous arrays which weren't executed yet.
+     * So navigation called from an input event doesn't run queued fragment work synchronously.
+     *
+     * @param deferredFlush true to defer {@code executePendingTransactions()}
+     */
+    public void setDeferredFlush(boolean deferredFlush) {
+        this.deferredFlush = deferredFlush;
+    }
+
+    /**
+     * Enables lazy chains: a fragment screen followed by another fragment {@link Forward}
+     * in the same command array (e.g. {@code newChain} or {@code newRootChain}) isn't committed.
+     * It is kept in the local stack copy and its fragment is created only when it becomes the top screen again.
+     * So a chain of several screens creates one fragment.<br>
+     * The fragment manager back stack doesn't contain lazy screens,
+     * so the system back button must be handled by the router.
+     *
+     * @param lazyChains true to postpone fragments of intermediate chain screens
+     */
+    public void setLazyChains(boolean lazyChains) {
+        this.lazyChains = lazyChains;
+    }
+
+    /**
+     * Sets the listener measuring apply time of commands.
+     *
+     * @param metricsListener listener or null to stop measuring
+     */
+    public void setMetricsListener(@Nullable NavigationMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * Must be called by the back stack changed listener of the fragment manager.
+     * A change is caused by the engine if it committed or popped entries and the back stack
+     * has the expected count of entries, then the local stack copy isn't checked.
+     * Other changes (e.g. by the system back button) make the engine compare the whole stack before the next commands.
+     */
+    public void onBackStackChanged() {
+        hasPendingTransactions = false;
+        if (expectedChanges > 0 && backend.getBackStackEntryCount() == localStackCopy.size() - lazyCount) {
+            // the fragment manager reports transactions executed together once
+            expectedChanges = 0;
+        } else {
+            backStackChanged = true;
+        }
+    }
+
+    /**
+     * Must be called when the back stack changed listener is registered again:
+     * changes made while it wasn't registered weren't reported, so the stack copy is checked before the next commands.
+     */
+    public void onListenerAttached() {
+        backStackChanged = true;
+    }
+
+    /**
+     * Prepares the local stack copy before the command array is applied.
+     */
+    public void beginBatch() {
+        if (deferredFlush) {
+            flushBeforeTransaction = hasPendingTransactions;
+        } else {
+            executePendingTransactions();
+        }
+        syncStackToLocal();
+    }
+
+    /**
+     * Applies commands one by one and reports their apply time.
+     * Fragment transactions of several commands are passed to the backend as reorderable.
+     *
+     * @param plan    commands to apply, see {@link #planCommands(Command[])}
+     * @param applier navigator applying single commands
+     */
+    public void applyPlan(@NotNull Command[] plan, @NotNull CommandApplier applier) {
+        reorderingAllowed = plan.length > 1;
+        this.plan = plan;
+        try {
+            NavigationMetricsListener listener = metricsListener;
+            for (int i = 0; i < plan.length; i++) {
+                Command command = plan[i];
+                planIndex = i;
+                long start = listener != null ? System.nanoTime() : 0;
+                RuntimeException error = null;
+                try {
+                    applier.applyCommand(command);
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                if (listener != null) {
+                    listener.onCommandApplied(command, System.nanoTime() - start, error);
+                }
+                if (error != null) {
+                    applier.errorOnApplyCommand(command, error);
+                }
+            }
+            if (lazyCount != 0 || lazyRoot != null) {
+                commitLazyTop(applier);
+            }
+        } finally {
+            reorderingAllowed = false;
+            this.plan = null;
+        }
+    }
+
+    /**
+     * Folds the command array into the equivalent one producing fewer fragment transactions:
+     * fragment {@link Forward} followed by {@link Back} is dropped,
+     * fragment {@link Forward} followed by fragment {@link Replace} becomes one {@link Forward}.
+     *
+     * @param commands command array passed to the navigator
+     * @return commands to apply
+     */
+    @NotNull
+    public Command[] planCommands(@NotNull Command[] commands) {
+        if (commands.length < 2) return commands;
+
+        ArrayList<Command> plan = new ArrayList<>(commands.length);
+        for (Command command : commands) {
+            Command last = plan.isEmpty() ? null : plan.get(plan.size() - 1);
+            if (last instanceof Forward
+                    && (command instanceof Back || command instanceof Replace)
+                    && backend.isFragmentScreen(((Forward) last).getScreen())) {
+                if (command instanceof Back) {
+                    plan.remove(plan.size() - 1);
+                    continue;
+                } else if (backend.isFragmentScreen(((Replace) command).getScreen())) {
+                    plan.set(plan.size() - 1, new Forward(((Replace) command).getScreen()));
+                    continue;
+                }
+            }
+            plan.add(command);
+        }
+        return plan.size() == commands.length ? commands : plan.toArray(new Command[plan.size()]);
+    }
+
+    /**
+     * Opens the fragment screen on top of the stack.
+     */
+    public void forward(@NotNull Command command, @NotNull Screen screen) {
+        if (isChainLink()) {
+            pushLazy(command);
+            return;
+        }
+
+        flushIfDeferred();
+        F fragment = backend.prepareFragment(screen);
+        commitFragment(command, screen, fragment, true);
+    }
+
+    /**
+     * Replaces the top of the stack with the fragment screen.
+     */
+    public void replace(@NotNull Command command, @NotNull Screen screen) {
+        if (isChainLink()) {
+            if (!localStackCopy.isEmpty()) {
+                popTop();
+                pushLazy(command);
+            } else {
+                lazyRoot = command;
+            }
+            return;
+        }
+
+        flushIfDeferred();
+        F fragment = backend.prepareFragment(screen);
+
+        if (!localStackCopy.isEmpty()) {
+            popTop();
+            commitFragment(command, screen, fragment, true);
+        } else {
+            lazyRoot = null;
+            commitFragment(command, screen, fragment, false);
+        }
+    }
+
+    /**
+     * Pops the top of the stack.
+     *
+     * @return false if the stack is empty
+     */
+    public boolean back() {
+        if (localStackCopy.isEmpty()) return false;
+
+        popTop();
+        return true;
+    }
+
+    /**
+     * Pops the stack to the last screen with the key.
+     *
+     * @param key screen key
+     * @return false if there is no screen with the key in the stack
+     */
+    public boolean backTo(@NotNull String key) {
+        // the fragment manager pops to the last entry with the name
+        int index = localStackCopy.lastIndexOf(key);
+        if (index == -1) return false;
+
+        if (lazyCount == 0) {
+            localStackCopy.truncate(index + 1);
+            backend.popBackStack(key);
+            onTransactionCommitted(true);
+            return true;
+        }
+
+        // lazy entries have no back stack entries, so committed ones are popped by count
+        int committed = 0;
+        for (int i = index + 1; i < localStackCopy.size(); i++) {
+            if (!isLazy(i)) committed++;
+        }
+        localStackCopy.truncate(index + 1);
+        dropLazyFrom(index + 1);
+        for (int i = 0; i < committed; i++) {
+            backend.popBackStack();
+            onTransactionCommitted(true);
+        }
+        return true;
+    }
+
+    public void backToRoot() {
+        backend.popBackStackToRoot();
+        onTransactionCommitted(true);
+        localStackCopy.clear();
+        dropLazyFrom(0);
+    }
+
+    /**
+     * @return true if the local stack copy is empty, i.e. only the root screen is shown
+     */
+    public boolean isAtRoot() {
+        syncStackToLocal();
+        return localStackCopy.isEmpty();
+    }
+
+    /**
+     * Shows the stack of the container screen, see {@link ru.terrakok.cicerone.commands.SwitchStack}.
+     * Switching to the shown stack does nothing.
+     */
+    public void switchStack(@NotNull Command command, @NotNull Screen screen) {
+        String key = screen.getScreenKey();
+        if (key.equals(currentStackKey)) return;
+
+        backend.switchStack(command, screen, currentStackKey);
+        hasPendingTransactions = false;
+        flushBeforeTransaction = false;
+        currentStackKey = key;
+    }
+
+    /**
+     * @return key of the stack shown by the last {@link #switchStack} or null
+     */
+    @Nullable
+    public String getCurrentStackKey() {
+        return currentStackKey;
+    }
+
+    /**
+     * Writes the local stack copy with commands of lazy entries, the lazy root and the shown stack key.
+     * Fragments are saved by the fragment manager.
+     */
+    public void writeSnapshot(@NotNull SnapshotWriter writer) {
+        syncStackToLocal();
+        writer.writeByte(SNAPSHOT_MARKER);
+        int size = localStackCopy.size();
+        writer.writeVarInt(size);
+        for (int i = 0; i < size; i++) {
+            // the key of a lazy entry is the key of its command screen
+            boolean lazy = isLazy(i);
+            writer.writeBoolean(lazy);
+            if (lazy) {
+                writer.writeCommand(lazyCommands.get(i));
+            } else {
+                writer.writeString(localStackCopy.get(i));
+            }
+        }
+        writer.writeBoolean(lazyRoot != null);
+        if (lazyRoot != null) {
+            writer.writeCommand(lazyRoot);
+        }
+        writer.writeString(currentStackKey);
+    }
+
+    /**
+     * Replaces the engine state with the one written by {@link #writeSnapshot}.
+     * The state isn't changed if the snapshot is malformed or has trailing bytes.
+     * The restored stack is checked against the fragment manager before the next command array
+     * and copied from it if they don't match.
+     */
+    public void readSnapshot(@NotNull SnapshotReader reader) {
+        if (reader.readByte() != SNAPSHOT_MARKER) {
+            throw new IllegalArgumentException("Not a navigator snapshot");
+        }
+        int size = reader.readCount();
+        ArrayList<String> keys = new ArrayList<>(size);
+        ArrayList<Command> commands = new ArrayList<>();
+        int lazy = 0;
+        for (int i = 0; i < size; i++) {
+            if (reader.readBoolean()) {
+                Command command = checkLazyCommand(reader.readCommand());
+                while (commands.size() < i) {
+                    commands.add(null);
+                }
+                commands.add(command);
+                keys.add(getScreen(command).getScreenKey());
+                lazy++;
+            } else {
+                keys.add(reader.readString());
+            }
+        }
+        Command root = reader.readBoolean() ? checkLazyCommand(reader.readCommand()) : null;
+        String stackKey = reader.readString();
+        reader.requireEnd();
+
+        localStackCopy.clear();
+        for (String key : keys) {
+            localStackCopy.push(key);
+        }
+        lazyCommands.clear();
+        lazyCommands.addAll(commands);
+        lazyCount = lazy;
+        lazyRoot = root;
+        currentStackKey = stackKey;
+        stackCopied = true;
+        backStackChanged = true;
+        expectedChanges = 0;
+    }
+
+    @NotNull
+    private static Command checkLazyCommand(@NotNull Command command) {
+        if (!(command instanceof Forward) && !(command instanceof Replace)) {
+            throw new IllegalArgumentException("Unexpected lazy command: " + command.getClass().getName());
+        }
+        return command;
+    }
+
+    /**
+     * Removes the top stack entry, popping the back stack if the entry is committed.
+     */
+    private void popTop() {
+        int top = localStackCopy.size() - 1;
+        if (isLazy(top)) {
+            dropLazyFrom(top);
+        } else {
+            backend.popBackStack();
+            onTransactionCommitted(true);
+        }
+        localStackCopy.pop();
+    }
+
+    /**
+     * @return true if the current command is followed by a fragment {@link Forward} in the plan
+     */
+    private boolean isChainLink() {
+        if (!lazyChains || plan == null || planIndex + 1 >= plan.length) return false;
+
+        Command next = plan[planIndex + 1];
+        return next instanceof Forward && backend.isFragmentScreen(((Forward) next).getScreen());
+    }
+
+    private void pushLazy(@NotNull Command command) {
+        int position = localStackCopy.size();
+        localStackCopy.push(getScreen(command).getScreenKey());
+        while (lazyCommands.size() <= position) {
+            lazyCommands.add(null);
+        }
+        lazyCommands.set(position, command);
+        lazyCount++;
+    }
+
+    private boolean isLazy(int position) {
+        return lazyCount != 0 && position < lazyCommands.size() && lazyCommands.get(position) != null;
+    }
+
+    /**
+     * Forgets lazy entries from the position to the end of the stack.
+     */
+    private void dropLazyFrom(int position) {
+        if (lazyCount == 0 || position >= lazyCommands.size()) return;
+
+        for (int i = position; i < lazyCommands.size(); i++) {
+            if (lazyCommands.get(i) != null) lazyCount--;
+        }
+        lazyCommands.subList(position, lazyCommands.size()).clear();
+    }
+
+    /**
+     * Commits the fragment of the lazy top screen (or the lazy root), so it is shown after the plan.
+     */
+    private void commitLazyTop(@NotNull CommandApplier applier) {
+        Command command;
+        boolean root = localStackCopy.isEmpty();
+        if (root) {
+            command = lazyRoot;
+        } else {
+            int top = localStackCopy.size() - 1;
+            command = isLazy(top) ? lazyCommands.get(top) : null;
+        }
+        if (command == null) return;
+
+        try {
+            flushIfDeferred();
+            Screen screen = getScreen(command);
+            F fragment = backend.prepareFragment(screen);
+            if (root) {
+                lazyRoot = null;
+            } else {
+                dropLazyFrom(localStackCopy.size() - 1);
+            }
+            backend.commitFragment(command, screen, fragment, !root, true);
+            onTransactionCommitted(!root);
+        } catch (RuntimeException e) {
+            applier.errorOnApplyCommand(command, e);
+        }
+    }
+
+    @NotNull
+    private static Screen getScreen(@NotNull Command command) {
+        return command instanceof Replace ? ((Replace) command).getScreen() : ((Forward) command).getScreen();
+    }
+
+    private void commitFragment(@NotNull Command command,
+                                @NotNull Screen screen,
+                                @NotNull F fragment,
+                                boolean addToBackStack) {
+        backend.commitFragment(command, screen, fragment, addToBackStack, reorderingAllowed);
+        onTransactionCommitted(addToBackStack);
+        if (addToBackStack) {
+            localStackCopy.push(screen.getScreenKey());
+        }
+    }
+
+    /**
+     * @param backStackChange true if the transaction adds or pops back stack entries,
+     *                        so its back stack change notification is expected
+     */
+    private void onTransactionCommitted(boolean backStackChange) {
+        hasPendingTransactions = true;
+        if (backStackChange) {
+            expectedChanges++;
+        }
+    }
+
+    /**
+     * Keeps the local stack copy between command arrays and copies the stack again
+     * only if the fragment manager stack was changed not by the engine and any entry doesn't match the local copy
+     * (e.g. it was popped by the system back button).
+     */
+    private void syncStackToLocal() {
+        if (!stackCopied) {
+            copyStackToLocal();
+            stackCopied = true;
+            backStackChanged = false;
+        } else if (backStackChanged && !hasPendingTransactions) {
+            // with pending transactions the fragment manager is behind the local copy
+            if (!isLocalStackInSync()) {
+                copyStackToLocal();
+            }
+            backStackChanged = false;
+        }
+    }
+
+    private void executePendingTransactions() {
+        backend.executePendingTransactions();
+        hasPendingTransactions = false;
+        flushBeforeTransaction = false;
+    }
+
+    /**
+     * Executes transactions of previous command arrays if it was deferred,
+     * so the fragment manager state is actual for the next fragment transaction.
+     */
+    private void flushIfDeferred() {
+        if (flushBeforeTransaction) {
+            executePendingTransactions();
+        }
+    }
+
+    /**
+     * Compares names of all back stack entries with committed entries of the local stack copy.
+     */
+    private boolean isLocalStackInSync() {
+        final int stackSize = backend.getBackStackEntryCount();
+        if (stackSize != localStackCopy.size() - lazyCount) return false;
+
+        int position = 0;
+        for (int i = 0; i < stackSize; i++) {
+            while (isLazy(position)) {
+                position++;
+            }
+            String name = backend.getBackStackEntryName(i);
+            String key = localStackCopy.get(position++);
+            if (name == null ? key != null : !name.equals(key)) return false;
+        }
+        return true;
+    }
+
+    private void copyStackToLocal() {
+        localStackCopy.clear();
+        dropLazyFrom(0);
+        lazyRoot = null;
+
+        final int stackSize = backend.getBackStackEntryCount();
+        for (int i = 0; i < stackSize; i++) {
+            localStackCopy.push(backend.getBackStackEntryName(i));
+        }
+    }
+}
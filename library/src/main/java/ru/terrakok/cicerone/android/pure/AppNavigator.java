@@ -8,22 +8,53 @@ import android.content.Intent;
 import android.os.Bundle;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import ru.terrakok.cicerone.Navigator;
+import ru.terrakok.cicerone.AttachableNavigator;
+import ru.terrakok.cicerone.Screen;
+import ru.terrakok.cicerone.ScreenStack;
+import ru.terrakok.cicerone.StackNavigator;
+import ru.terrakok.cicerone.android.ActivityResolutionCache;
+import ru.terrakok.cicerone.android.FragmentBackend;
+import ru.terrakok.cicerone.android.NavigationEngine;
 import ru.terrakok.cicerone.commands.*;
-
-import java.util.LinkedList;
+import ru.terrakok.cicerone.metrics.NavigationMetricsListener;
+import ru.terrakok.cicerone.snapshot.ScreenCodec;
+import ru.terrakok.cicerone.snapshot.SnapshotReader;
+import ru.terrakok.cicerone.snapshot.SnapshotWriter;
 
 /**
  * Navigator implementation for launch fragments and activities.<br>
  * Feature {@link BackTo} works only for fragments.<br>
- * Recommendation: most useful for Single-Activity application.
+ * Recommendation: most useful for Single-Activity application.<br>
+ * The fragment manager back stack is observed only while the navigator is set to a {@link ru.terrakok.cicerone.NavigatorHolder}.
  */
-public class AppNavigator implements Navigator {
+public class AppNavigator implements StackNavigator, AttachableNavigator {
 
     protected final Activity activity;
     protected final FragmentManager fragmentManager;
     protected final int containerId;
-    protected LinkedList<String> localStackCopy;
+    protected final ScreenStack localStackCopy;
+    private final NavigationEngine<Fragment> engine;
+    @Nullable
+    private ActivityResolutionCache resolutionCache;
+    private final CommandDispatcher commandDispatcher = new CommandDispatcher();
+    private final FragmentManager.OnBackStackChangedListener backStackListener =
+            new FragmentManager.OnBackStackChangedListener() {
+                @Override
+                public void onBackStackChanged() {
+                    engine.onBackStackChanged();
+                }
+            };
+    private final NavigationEngine.CommandApplier commandApplier = new NavigationEngine.CommandApplier() {
+        @Override
+        public void applyCommand(@NotNull Command command) {
+            AppNavigator.this.applyCommand(command);
+        }
+
+        @Override
+        public void errorOnApplyCommand(@NotNull Command command, @NotNull RuntimeException error) {
+            AppNavigator.this.errorOnApplyCommand(command, error);
+        }
+    };
 
     public AppNavigator(@NotNull Activity activity, int containerId) {
         this(activity, activity.getFragmentManager(), containerId);
@@ -33,31 +64,166 @@ public class AppNavigator implements Navigator {
         this.activity = activity;
         this.fragmentManager = fragmentManager;
         this.containerId = containerId;
+        this.engine = new NavigationEngine<>(new PureFragmentBackend());
+        this.localStackCopy = engine.getStack();
+
+        registerCommandHandlers();
     }
 
+    /**
+     * Registers the back stack listener, so the navigator doesn't outlive its activity or fragment
+     * through the fragment manager while it isn't set to a holder.
+     */
     @Override
-    public void applyCommands(@NotNull Command[] commands) {
-        fragmentManager.executePendingTransactions();
+    public void onAttach() {
+        fragmentManager.addOnBackStackChangedListener(backStackListener);
+        engine.onListenerAttached();
+    }
 
-        //copy stack before apply commands
-        copyStackToLocal();
+    @Override
+    public void onDetach() {
+        fragmentManager.removeOnBackStackChangedListener(backStackListener);
+    }
 
-        for (Command command : commands) {
-            try {
-                applyCommand(command);
-            } catch (RuntimeException e) {
-                errorOnApplyCommand(command, e);
+    private void registerCommandHandlers() {
+        commandDispatcher.register(Forward.class, new CommandHandler<Forward>() {
+            @Override
+            public void handle(@NotNull Forward command) {
+                activityForward(command);
             }
-        }
+        });
+        commandDispatcher.register(Replace.class, new CommandHandler<Replace>() {
+            @Override
+            public void handle(@NotNull Replace command) {
+                activityReplace(command);
+            }
+        });
+        commandDispatcher.register(BackTo.class, new CommandHandler<BackTo>() {
+            @Override
+            public void handle(@NotNull BackTo command) {
+                backTo(command);
+            }
+        });
+        commandDispatcher.register(Back.class, new CommandHandler<Back>() {
+            @Override
+            public void handle(@NotNull Back command) {
+                fragmentBack();
+            }
+        });
+        commandDispatcher.register(SwitchStack.class, new CommandHandler<SwitchStack>() {
+            @Override
+            public void handle(@NotNull SwitchStack command) {
+                switchStack(command);
+            }
+        });
+    }
+
+    @Override
+    public void applyCommands(@NotNull Command[] commands) {
+        //sync stack copy before apply commands
+        engine.beginBatch();
+
+        engine.applyPlan(planCommands(commands), commandApplier);
     }
 
-    private void copyStackToLocal() {
-        localStackCopy = new LinkedList<>();
+    @Override
+    public boolean isAtRoot() {
+        return engine.isAtRoot();
+    }
 
-        final int stackSize = fragmentManager.getBackStackEntryCount();
-        for (int i = 0; i < stackSize; i++) {
-            localStackCopy.add(fragmentManager.getBackStackEntryAt(i).getName());
-        }
+    /**
+     * Folds the command array into the equivalent one producing fewer fragment transactions,
+     * see {@link NavigationEngine#planCommands(Command[])}.
+     *
+     * @param commands command array passed to the navigator
+     * @return commands to apply
+     */
+    @NotNull
+    protected Command[] planCommands(@NotNull Command[] commands) {
+        return engine.planCommands(commands);
+    }
+
+    private boolean isFragmentScreen(@NotNull Screen screen) {
+        return screen instanceof AppScreen && ((AppScreen) screen).getActivityIntent(activity) == null;
+    }
+
+    /**
+     * Enables the deferred mode: pending fragment transactions aren't executed at the start of every command array,
+     * see {@link NavigationEngine#setDeferredFlush(boolean)}.
+     *
+     * @param deferredFlush true to defer {@code executePendingTransactions()}
+     */
+    public void setDeferredFlush(boolean deferredFlush) {
+        engine.setDeferredFlush(deferredFlush);
+    }
+
+    /**
+     * Enables lazy chains: fragments of intermediate screens of a chain are created
+     * only when the user goes back to them, see {@link NavigationEngine#setLazyChains(boolean)}.
+     * The system back button must be handled by the router then.
+     *
+     * @param lazyChains true to postpone fragments of intermediate chain screens
+     */
+    public void setLazyChains(boolean lazyChains) {
+        engine.setLazyChains(lazyChains);
+    }
+
+    /**
+     * Sets the cache of activity resolution results used before an activity is started.
+     *
+     * @param resolutionCache cache or null to query the package manager every time
+     */
+    public void setActivityResolutionCache(@Nullable ActivityResolutionCache resolutionCache) {
+        this.resolutionCache = resolutionCache;
+    }
+
+    /**
+     * Registers the handler of custom commands or replaces the handler of standard ones.
+     * Commands without a handler are ignored.
+     *
+     * @param type    command class
+     * @param handler handler of commands of the type and its subclasses
+     */
+    public <C extends Command> void registerCommandHandler(@NotNull Class<C> type,
+                                                           @NotNull CommandHandler<? super C> handler) {
+        commandDispatcher.register(type, handler);
+    }
+
+    /**
+     * Sets the listener measuring apply time of commands,
+     * e.g. {@link ru.terrakok.cicerone.metrics.NavigationMetrics} or {@link ru.terrakok.cicerone.metrics.FlightRecorder}.
+     *
+     * @param metricsListener listener or null to stop measuring
+     */
+    public void setMetricsListener(@Nullable NavigationMetricsListener metricsListener) {
+        engine.setMetricsListener(metricsListener);
+    }
+
+    /**
+     * Saves the navigator state to the compact binary form, e.g. to put it to the saved state bundle:
+     * the screens chain with screens of lazy chains which have no fragments yet and the shown stack key.
+     * Fragments themselves are saved by the fragment manager.
+     *
+     * @param screenCodec writer of screens without fragments
+     * @return snapshot restored by {@link #restoreSnapshot(byte[], ScreenCodec)}
+     */
+    @NotNull
+    public byte[] createSnapshot(@NotNull ScreenCodec screenCodec) {
+        SnapshotWriter writer = new SnapshotWriter(screenCodec);
+        engine.writeSnapshot(writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Restores the navigator state after the fragment manager was restored,
+     * e.g. in {@code onCreate} with the saved state.
+     *
+     * @param snapshot    result of {@link #createSnapshot(ScreenCodec)}
+     * @param screenCodec reader of screens without fragments
+     * @throws IllegalArgumentException if the snapshot is malformed, has trailing bytes or an unsupported version
+     */
+    public void restoreSnapshot(@NotNull byte[] snapshot, @NotNull ScreenCodec screenCodec) {
+        engine.readSnapshot(new SnapshotReader(snapshot, screenCodec));
     }
 
     /**
@@ -66,15 +232,7 @@ public class AppNavigator implements Navigator {
      * @param command the navigation command to apply
      */
     protected void applyCommand(@NotNull Command command) {
-        if (command instanceof Forward) {
-            activityForward((Forward) command);
-        } else if (command instanceof Replace) {
-            activityReplace((Replace) command);
-        } else if (command instanceof BackTo) {
-            backTo((BackTo) command);
-        } else if (command instanceof Back) {
-            fragmentBack();
-        }
+        commandDispatcher.dispatch(command);
     }
 
 
@@ -92,30 +250,11 @@ public class AppNavigator implements Navigator {
     }
 
     protected void fragmentForward(@NotNull Forward command) {
-        AppScreen screen = (AppScreen) command.getScreen();
-        Fragment fragment = createFragment(screen);
-
-        FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction();
-
-        setupFragmentTransaction(
-                command,
-                fragmentManager.findFragmentById(containerId),
-                fragment,
-                fragmentTransaction
-        );
-
-        fragmentTransaction
-                .replace(containerId, fragment)
-                .addToBackStack(screen.getScreenKey())
-                .commit();
-        localStackCopy.add(screen.getScreenKey());
+        engine.forward(command, command.getScreen());
     }
 
     protected void fragmentBack() {
-        if (localStackCopy.size() > 0) {
-            fragmentManager.popBackStack();
-            localStackCopy.removeLast();
-        } else {
+        if (!engine.back()) {
             activityBack();
         }
     }
@@ -139,42 +278,7 @@ public class AppNavigator implements Navigator {
     }
 
     protected void fragmentReplace(@NotNull Replace command) {
-        AppScreen screen = (AppScreen) command.getScreen();
-        Fragment fragment = createFragment(screen);
-
-        if (localStackCopy.size() > 0) {
-            fragmentManager.popBackStack();
-            localStackCopy.removeLast();
-
-            FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction();
-
-            setupFragmentTransaction(
-                    command,
-                    fragmentManager.findFragmentById(containerId),
-                    fragment,
-                    fragmentTransaction
-            );
-
-            fragmentTransaction
-                    .replace(containerId, fragment)
-                    .addToBackStack(screen.getScreenKey())
-                    .commit();
-            localStackCopy.add(screen.getScreenKey());
-
-        } else {
-            FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction();
-
-            setupFragmentTransaction(
-                    command,
-                    fragmentManager.findFragmentById(containerId),
-                    fragment,
-                    fragmentTransaction
-            );
-
-            fragmentTransaction
-                    .replace(containerId, fragment)
-                    .commit();
-        }
+        engine.replace(command, command.getScreen());
     }
 
     /**
@@ -183,32 +287,40 @@ public class AppNavigator implements Navigator {
     protected void backTo(@NotNull BackTo command) {
         if (command.getScreen() == null) {
             backToRoot();
-        } else {
-            String key = command.getScreen().getScreenKey();
-            int index = localStackCopy.indexOf(key);
-            int size = localStackCopy.size();
-
-            if (index != -1) {
-                for (int i = 1; i < size - index; i++) {
-                    localStackCopy.removeLast();
-                }
-                fragmentManager.popBackStack(key, 0);
-            } else {
-                backToUnexisting((AppScreen) command.getScreen());
-            }
+        } else if (!engine.backTo(command.getScreen().getScreenKey())) {
+            backToUnexisting((AppScreen) command.getScreen());
         }
     }
 
     private void backToRoot() {
-        fragmentManager.popBackStack(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
-        localStackCopy.clear();
+        engine.backToRoot();
+    }
+
+    /**
+     * Performs {@link SwitchStack} command transition.
+     * Stack container fragments are added to the container with screen keys as tags
+     * and only hidden on switch, so their views and nested back stacks are kept.
+     * The transaction is executed immediately, so the apply time reported
+     * to the metrics listener is the switch latency.
+     */
+    protected void switchStack(@NotNull SwitchStack command) {
+        engine.switchStack(command, command.getScreen());
+    }
+
+    /**
+     * @return key of the shown stack or null if {@link SwitchStack} wasn't applied by this navigator
+     */
+    @Nullable
+    public String getCurrentStackKey() {
+        return engine.getCurrentStackKey();
     }
 
     /**
      * Override this method to setup fragment transaction {@link FragmentTransaction}.
      * For example: setCustomAnimations(...), addSharedElement(...) or setReorderingAllowed(...)
      *
-     * @param command             current navigation command. Will be only {@link Forward} or {@link Replace}
+     * @param command             current navigation command. Will be only {@link Forward}, {@link Replace}
+     *                            or {@link SwitchStack}
      * @param currentFragment     current fragment in container
      *                            (for {@link Replace} command it will be screen previous in new chain, NOT replaced screen)
      * @param nextFragment        next screen fragment
@@ -236,13 +348,21 @@ public class AppNavigator implements Navigator {
                                        @NotNull Intent activityIntent,
                                        @Nullable Bundle options) {
         // Check if we can start activity
-        if (activityIntent.resolveActivity(activity.getPackageManager()) != null) {
+        if (canResolveActivity(activityIntent)) {
             activity.startActivity(activityIntent, options);
         } else {
             unexistingActivity(screen, activityIntent);
         }
     }
 
+    private boolean canResolveActivity(@NotNull Intent activityIntent) {
+        ActivityResolutionCache cache = resolutionCache;
+        if (cache != null) {
+            return cache.canResolve(activityIntent, activity.getPackageManager());
+        }
+        return activityIntent.resolveActivity(activity.getPackageManager()) != null;
+    }
+
     /**
      * Called when there is no activity to open {@code screenKey}.
      *
@@ -301,4 +421,108 @@ public class AppNavigator implements Navigator {
     ) {
         throw error;
     }
+
+    private final class PureFragmentBackend implements FragmentBackend<Fragment> {
+
+        @Override
+        public int getBackStackEntryCount() {
+            return fragmentManager.getBackStackEntryCount();
+        }
+
+        @Nullable
+        @Override
+        public String getBackStackEntryName(int index) {
+            return fragmentManager.getBackStackEntryAt(index).getName();
+        }
+
+        @Override
+        public void executePendingTransactions() {
+            fragmentManager.executePendingTransactions();
+        }
+
+        @Override
+        public void popBackStack() {
+            fragmentManager.popBackStack();
+        }
+
+        @Override
+        public void popBackStack(@NotNull String name) {
+            fragmentManager.popBackStack(name, 0);
+        }
+
+        @Override
+        public void popBackStackToRoot() {
+            fragmentManager.popBackStack(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+        }
+
+        @Override
+        public boolean isFragmentScreen(@NotNull Screen screen) {
+            return AppNavigator.this.isFragmentScreen(screen);
+        }
+
+        @NotNull
+        @Override
+        public Fragment prepareFragment(@NotNull Screen screen) {
+            Fragment fragment = createFragment((AppScreen) screen);
+            if (fragment == null) {
+                throw new RuntimeException("Can't create a screen: " + screen.getScreenKey());
+            }
+            return fragment;
+        }
+
+        @Override
+        public void commitFragment(@NotNull Command command,
+                                   @NotNull Screen screen,
+                                   @NotNull Fragment fragment,
+                                   boolean addToBackStack,
+                                   boolean reorderingAllowed) {
+            FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction();
+
+            setupFragmentTransaction(
+                    command,
+                    fragmentManager.findFragmentById(containerId),
+                    fragment,
+                    fragmentTransaction
+            );
+
+            fragmentTransaction.replace(containerId, fragment);
+            if (addToBackStack) {
+                fragmentTransaction.addToBackStack(screen.getScreenKey());
+            }
+            fragmentTransaction.commit();
+        }
+
+        @Override
+        public void switchStack(@NotNull Command command, @NotNull Screen screen, @Nullable String previousKey) {
+            String key = screen.getScreenKey();
+            Fragment current;
+            if (previousKey != null) {
+                current = fragmentManager.findFragmentByTag(previousKey);
+            } else {
+                // framework fragment manager can't list fragments, the last added one is checked
+                current = fragmentManager.findFragmentById(containerId);
+                if (current != null && current.isHidden()) {
+                    current = null;
+                }
+            }
+            Fragment next = fragmentManager.findFragmentByTag(key);
+            if (next == null) {
+                next = prepareFragment(screen);
+            }
+            if (next == current) return;
+
+            FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction();
+            setupFragmentTransaction(command, current, next, fragmentTransaction);
+            if (current != null) {
+                fragmentTransaction.hide(current);
+            }
+            if (next.isAdded()) {
+                fragmentTransaction.show(next);
+            } else {
+                fragmentTransaction.add(containerId, next, key);
+            }
+            fragmentTransaction.commit();
+            fragmentManager.executePendingTransactions();
+        }
+    }
 }
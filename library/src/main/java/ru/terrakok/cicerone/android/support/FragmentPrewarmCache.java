@@ -0,0 +1,191 @@
+package ru.terrakok.cicerone.android.support;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import androidx.fragment.app.Fragment;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of fragments created ahead of time for screens which are likely to be opened next.<br>
+ * Hint screens with {@link #prewarm(SupportAppScreen)}, their fragments are created one by one
+ * when the main thread is idle. {@link SupportAppNavigator} takes the cached fragment
+ * instead of calling {@link SupportAppScreen#getFragment()} if the opened screen matches the hinted one:
+ * it is the same instance or both have the same screen key and {@link SupportAppScreen#getArgumentsKey()}.<br>
+ * When the cache is full the oldest fragment is evicted.
+ */
+public class FragmentPrewarmCache {
+
+    private final int maxSize;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // guarded by this, both are keyed by screen keys
+    private final LinkedHashMap<String, SupportAppScreen> hints = new LinkedHashMap<>();
+    private final LinkedHashMap<String, CachedFragment> fragments = new LinkedHashMap<>();
+    private boolean idleHandlerAdded;
+    private long evictedCount;
+
+    private final MessageQueue.IdleHandler idleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            return warmUpNext();
+        }
+    };
+    // the idle handler is added on the main thread, Looper.getQueue() is available since API 23 only
+    private final Runnable addIdleHandler = new Runnable() {
+        @Override
+        public void run() {
+            Looper.myQueue().addIdleHandler(idleHandler);
+        }
+    };
+
+    /**
+     * @param maxSize max count of cached fragments
+     */
+    public FragmentPrewarmCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Hints that the screen may be opened soon. Safe to call from any thread.
+     * The fragment is created on the main thread when it is idle.
+     * Override {@link SupportAppScreen#getArgumentsKey()} to reuse it for a new instance of the screen
+     * passed to the router, otherwise the same instance must be opened.
+     *
+     * @param screen fragment screen without {@link FragmentParams}
+     */
+    public void prewarm(@NotNull SupportAppScreen screen) {
+        String key = screen.getScreenKey();
+        synchronized (this) {
+            CachedFragment cached = fragments.get(key);
+            if (cached != null && matches(cached.screen, screen)) return;
+
+            hints.remove(key);
+            hints.put(key, screen);
+            if (hints.size() > maxSize) {
+                // the latest hints are the most relevant
+                Iterator<String> iterator = hints.keySet().iterator();
+                iterator.next();
+                iterator.remove();
+            }
+            if (idleHandlerAdded) return;
+            idleHandlerAdded = true;
+        }
+        mainHandler.post(addIdleHandler);
+    }
+
+    /**
+     * Removes the cached fragment of the screen.
+     * A fragment of another screen with the same key (e.g. with other arguments) isn't returned.
+     *
+     * @param screen opened screen
+     * @return prewarmed fragment or null if there is no one
+     */
+    @Nullable
+    public synchronized Fragment take(@NotNull SupportAppScreen screen) {
+        String key = screen.getScreenKey();
+        SupportAppScreen hint = hints.get(key);
+        if (hint != null && matches(hint, screen)) {
+            hints.remove(key);
+        }
+        CachedFragment cached = fragments.get(key);
+        if (cached == null || !matches(cached.screen, screen)) return null;
+        fragments.remove(key);
+        return cached.fragment;
+    }
+
+    /**
+     * Drops all hints and cached fragments, e.g. on low memory.
+     */
+    public synchronized void clear() {
+        hints.clear();
+        fragments.clear();
+    }
+
+    public synchronized int size() {
+        return fragments.size();
+    }
+
+    /**
+     * @return count of fragments dropped from the full cache without being used
+     */
+    public synchronized long getEvictedCount() {
+        return evictedCount;
+    }
+
+    /**
+     * Creates the fragment of the oldest hint.
+     *
+     * @return true if there are more hints
+     */
+    private boolean warmUpNext() {
+        SupportAppScreen screen;
+        synchronized (this) {
+            Iterator<Map.Entry<String, SupportAppScreen>> iterator = hints.entrySet().iterator();
+            if (!iterator.hasNext()) {
+                idleHandlerAdded = false;
+                return false;
+            }
+            screen = iterator.next().getValue();
+            iterator.remove();
+        }
+
+        Fragment fragment;
+        try {
+            fragment = screen.getFragmentParams() == null ? screen.getFragment() : null;
+        } catch (RuntimeException e) {
+            // the message queue removes the failed handler
+            synchronized (this) {
+                idleHandlerAdded = false;
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            if (fragment != null) {
+                String key = screen.getScreenKey();
+                fragments.remove(key);
+                fragments.put(key, new CachedFragment(screen, fragment));
+                if (fragments.size() > maxSize) {
+                    Iterator<String> iterator = fragments.keySet().iterator();
+                    iterator.next();
+                    iterator.remove();
+                    evictedCount++;
+                }
+            }
+            if (hints.isEmpty()) {
+                idleHandlerAdded = false;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Both screens have the same screen key.
+     */
+    private static boolean matches(@NotNull SupportAppScreen hinted, @NotNull SupportAppScreen opened) {
+        if (hinted == opened) return true;
+        String argumentsKey = hinted.getArgumentsKey();
+        return argumentsKey != null && argumentsKey.equals(opened.getArgumentsKey());
+    }
+
+    private static final class CachedFragment {
+        final SupportAppScreen screen;
+        final Fragment fragment;
+
+        CachedFragment(@NotNull SupportAppScreen screen, @NotNull Fragment fragment) {
+            this.screen = screen;
+            this.fragment = fragment;
+        }
+    }
+}
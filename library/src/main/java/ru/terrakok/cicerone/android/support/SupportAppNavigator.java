@@ -12,26 +12,65 @@ import androidx.fragment.app.FragmentTransaction;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.LinkedList;
-
-import ru.terrakok.cicerone.Navigator;
+import java.util.List;
+
+import ru.terrakok.cicerone.AttachableNavigator;
+import ru.terrakok.cicerone.Screen;
+import ru.terrakok.cicerone.ScreenStack;
+import ru.terrakok.cicerone.StackNavigator;
+import ru.terrakok.cicerone.android.ActivityResolutionCache;
+import ru.terrakok.cicerone.android.FragmentBackend;
+import ru.terrakok.cicerone.android.NavigationEngine;
 import ru.terrakok.cicerone.commands.Back;
 import ru.terrakok.cicerone.commands.BackTo;
 import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.CommandDispatcher;
+import ru.terrakok.cicerone.commands.CommandHandler;
 import ru.terrakok.cicerone.commands.Forward;
 import ru.terrakok.cicerone.commands.Replace;
+import ru.terrakok.cicerone.commands.SwitchStack;
+import ru.terrakok.cicerone.metrics.NavigationMetricsListener;
+import ru.terrakok.cicerone.snapshot.ScreenCodec;
+import ru.terrakok.cicerone.snapshot.SnapshotReader;
+import ru.terrakok.cicerone.snapshot.SnapshotWriter;
 
 /**
  * Navigator implementation for launch fragments and activities.<br>
  * Feature {@link BackTo} works only for fragments.<br>
- * Recommendation: most useful for Single-Activity application.
+ * Recommendation: most useful for Single-Activity application.<br>
+ * The fragment manager back stack is observed only while the navigator is set to a {@link ru.terrakok.cicerone.NavigatorHolder}.
  */
-public class SupportAppNavigator implements Navigator {
+public class SupportAppNavigator implements StackNavigator, AttachableNavigator {
 
     protected final Activity activity;
     protected final FragmentManager fragmentManager;
     protected final int containerId;
-    protected LinkedList<String> localStackCopy;
+    protected final ScreenStack localStackCopy;
+    private final NavigationEngine<PreparedFragment> engine;
+    @Nullable
+    private FragmentPrewarmCache prewarmCache;
+    @Nullable
+    private ActivityResolutionCache resolutionCache;
+    private boolean reorderingEnabled;
+    private final CommandDispatcher commandDispatcher = new CommandDispatcher();
+    private final FragmentManager.OnBackStackChangedListener backStackListener =
+            new FragmentManager.OnBackStackChangedListener() {
+                @Override
+                public void onBackStackChanged() {
+                    engine.onBackStackChanged();
+                }
+            };
+    private final NavigationEngine.CommandApplier commandApplier = new NavigationEngine.CommandApplier() {
+        @Override
+        public void applyCommand(@NotNull Command command) {
+            SupportAppNavigator.this.applyCommand(command);
+        }
+
+        @Override
+        public void errorOnApplyCommand(@NotNull Command command, @NotNull RuntimeException error) {
+            SupportAppNavigator.this.errorOnApplyCommand(command, error);
+        }
+    };
 
     public SupportAppNavigator(@NotNull FragmentActivity activity, int containerId) {
         this(activity, activity.getSupportFragmentManager(), containerId);
@@ -41,31 +80,190 @@ public class SupportAppNavigator implements Navigator {
         this.activity = activity;
         this.fragmentManager = fragmentManager;
         this.containerId = containerId;
+        this.engine = new NavigationEngine<>(new SupportFragmentBackend());
+        this.localStackCopy = engine.getStack();
+
+        registerCommandHandlers();
     }
 
+    /**
+     * Registers the back stack listener, so the navigator doesn't outlive its activity or fragment
+     * through the fragment manager while it isn't set to a holder.
+     */
     @Override
-    public void applyCommands(@NotNull Command[] commands) {
-        fragmentManager.executePendingTransactions();
+    public void onAttach() {
+        fragmentManager.addOnBackStackChangedListener(backStackListener);
+        engine.onListenerAttached();
+    }
 
-        //copy stack before apply commands
-        copyStackToLocal();
+    @Override
+    public void onDetach() {
+        fragmentManager.removeOnBackStackChangedListener(backStackListener);
+    }
 
-        for (Command command : commands) {
-            try {
-                applyCommand(command);
-            } catch (RuntimeException e) {
-                errorOnApplyCommand(command, e);
+    private void registerCommandHandlers() {
+        commandDispatcher.register(Forward.class, new CommandHandler<Forward>() {
+            @Override
+            public void handle(@NotNull Forward command) {
+                activityForward(command);
             }
-        }
+        });
+        commandDispatcher.register(Replace.class, new CommandHandler<Replace>() {
+            @Override
+            public void handle(@NotNull Replace command) {
+                activityReplace(command);
+            }
+        });
+        commandDispatcher.register(BackTo.class, new CommandHandler<BackTo>() {
+            @Override
+            public void handle(@NotNull BackTo command) {
+                backTo(command);
+            }
+        });
+        commandDispatcher.register(Back.class, new CommandHandler<Back>() {
+            @Override
+            public void handle(@NotNull Back command) {
+                fragmentBack();
+            }
+        });
+        commandDispatcher.register(SwitchStack.class, new CommandHandler<SwitchStack>() {
+            @Override
+            public void handle(@NotNull SwitchStack command) {
+                switchStack(command);
+            }
+        });
     }
 
-    private void copyStackToLocal() {
-        localStackCopy = new LinkedList<>();
+    @Override
+    public void applyCommands(@NotNull Command[] commands) {
+        //sync stack copy before apply commands
+        engine.beginBatch();
 
-        final int stackSize = fragmentManager.getBackStackEntryCount();
-        for (int i = 0; i < stackSize; i++) {
-            localStackCopy.add(fragmentManager.getBackStackEntryAt(i).getName());
-        }
+        engine.applyPlan(planCommands(commands), commandApplier);
+    }
+
+    @Override
+    public boolean isAtRoot() {
+        return engine.isAtRoot();
+    }
+
+    /**
+     * Folds the command array into the equivalent one producing fewer fragment transactions,
+     * see {@link NavigationEngine#planCommands(Command[])}.
+     * Transactions of the planned array are committed with {@code setReorderingAllowed(true)}
+     * if {@link #setReorderingAllowed(boolean)} is enabled.
+     *
+     * @param commands command array passed to the navigator
+     * @return commands to apply
+     */
+    @NotNull
+    protected Command[] planCommands(@NotNull Command[] commands) {
+        return engine.planCommands(commands);
+    }
+
+    private boolean isFragmentScreen(@NotNull Screen screen) {
+        return screen instanceof SupportAppScreen && ((SupportAppScreen) screen).getActivityIntent(activity) == null;
+    }
+
+    /**
+     * Enables the deferred mode: pending fragment transactions aren't executed at the start of every command array,
+     * see {@link NavigationEngine#setDeferredFlush(boolean)}.
+     *
+     * @param deferredFlush true to defer {@code executePendingTransactions()}
+     */
+    public void setDeferredFlush(boolean deferredFlush) {
+        engine.setDeferredFlush(deferredFlush);
+    }
+
+    /**
+     * Commits fragment transactions of a command array of several commands with {@code setReorderingAllowed(true)},
+     * so the fragment manager executes them together and skips lifecycles of intermediate fragments.
+     * Disabled by default: with reordering, intermediate fragments aren't created and their
+     * enter/exit transitions aren't run, which changes the behavior the app may rely on.
+     *
+     * @param reorderingAllowed true to allow reordering of transactions of one command array
+     */
+    public void setReorderingAllowed(boolean reorderingAllowed) {
+        this.reorderingEnabled = reorderingAllowed;
+    }
+
+    /**
+     * Sets the cache of fragments created ahead of time, see {@link FragmentPrewarmCache}.
+     * {@link #createFragment(SupportAppScreen)} takes the prewarmed fragment if there is one for the screen.
+     *
+     * @param prewarmCache cache or null to create fragments on demand only
+     */
+    public void setPrewarmCache(@Nullable FragmentPrewarmCache prewarmCache) {
+        this.prewarmCache = prewarmCache;
+    }
+
+    /**
+     * Enables lazy chains: fragments of intermediate screens of a chain are created
+     * only when the user goes back to them, see {@link NavigationEngine#setLazyChains(boolean)}.
+     * The system back button must be handled by the router then.
+     *
+     * @param lazyChains true to postpone fragments of intermediate chain screens
+     */
+    public void setLazyChains(boolean lazyChains) {
+        engine.setLazyChains(lazyChains);
+    }
+
+    /**
+     * Sets the cache of activity resolution results used before an activity is started.
+     *
+     * @param resolutionCache cache or null to query the package manager every time
+     */
+    public void setActivityResolutionCache(@Nullable ActivityResolutionCache resolutionCache) {
+        this.resolutionCache = resolutionCache;
+    }
+
+    /**
+     * Registers the handler of custom commands or replaces the handler of standard ones.
+     * Commands without a handler are ignored.
+     *
+     * @param type    command class
+     * @param handler handler of commands of the type and its subclasses
+     */
+    public <C extends Command> void registerCommandHandler(@NotNull Class<C> type,
+                                                           @NotNull CommandHandler<? super C> handler) {
+        commandDispatcher.register(type, handler);
+    }
+
+    /**
+     * Sets the listener measuring apply time of commands,
+     * e.g. {@link ru.terrakok.cicerone.metrics.NavigationMetrics} or {@link ru.terrakok.cicerone.metrics.FlightRecorder}.
+     *
+     * @param metricsListener listener or null to stop measuring
+     */
+    public void setMetricsListener(@Nullable NavigationMetricsListener metricsListener) {
+        engine.setMetricsListener(metricsListener);
+    }
+
+    /**
+     * Saves the navigator state to the compact binary form, e.g. to put it to the saved state bundle:
+     * the screens chain with screens of lazy chains which have no fragments yet and the shown stack key.
+     * Fragments themselves are saved by the fragment manager.
+     *
+     * @param screenCodec writer of screens without fragments
+     * @return snapshot restored by {@link #restoreSnapshot(byte[], ScreenCodec)}
+     */
+    @NotNull
+    public byte[] createSnapshot(@NotNull ScreenCodec screenCodec) {
+        SnapshotWriter writer = new SnapshotWriter(screenCodec);
+        engine.writeSnapshot(writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Restores the navigator state after the fragment manager was restored,
+     * e.g. in {@code onCreate} with the saved state.
+     *
+     * @param snapshot    result of {@link #createSnapshot(ScreenCodec)}
+     * @param screenCodec reader of screens without fragments
+     * @throws IllegalArgumentException if the snapshot is malformed, has trailing bytes or an unsupported version
+     */
+    public void restoreSnapshot(@NotNull byte[] snapshot, @NotNull ScreenCodec screenCodec) {
+        engine.readSnapshot(new SnapshotReader(snapshot, screenCodec));
     }
 
     /**
@@ -74,15 +272,7 @@ public class SupportAppNavigator implements Navigator {
      * @param command the navigation command to apply
      */
     protected void applyCommand(@NotNull Command command) {
-        if (command instanceof Forward) {
-            activityForward((Forward) command);
-        } else if (command instanceof Replace) {
-            activityReplace((Replace) command);
-        } else if (command instanceof BackTo) {
-            backTo((BackTo) command);
-        } else if (command instanceof Back) {
-            fragmentBack();
-        }
+        commandDispatcher.dispatch(command);
     }
 
 
@@ -100,19 +290,11 @@ public class SupportAppNavigator implements Navigator {
     }
 
     protected void fragmentForward(@NotNull Forward command) {
-        SupportAppScreen screen = (SupportAppScreen) command.getScreen();
-
-        FragmentParams fragmentParams = screen.getFragmentParams();
-        Fragment fragment = fragmentParams == null ? createFragment(screen) : null;
-
-        forwardFragmentInternal(command, screen, fragmentParams, fragment);
+        engine.forward(command, command.getScreen());
     }
 
     protected void fragmentBack() {
-        if (localStackCopy.size() > 0) {
-            fragmentManager.popBackStack();
-            localStackCopy.removeLast();
-        } else {
+        if (!engine.back()) {
             activityBack();
         }
     }
@@ -136,55 +318,7 @@ public class SupportAppNavigator implements Navigator {
     }
 
     protected void fragmentReplace(@NotNull Replace command) {
-        SupportAppScreen screen = (SupportAppScreen) command.getScreen();
-
-        FragmentParams fragmentParams = screen.getFragmentParams();
-        Fragment fragment = fragmentParams == null ? createFragment(screen) : null;
-
-        if (localStackCopy.size() > 0) {
-            fragmentManager.popBackStack();
-            localStackCopy.removeLast();
-
-            forwardFragmentInternal(command, screen, fragmentParams, fragment);
-
-        } else {
-            FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction();
-
-            setupFragmentTransaction(
-                    command,
-                    fragmentManager.findFragmentById(containerId),
-                    fragment,
-                    fragmentTransaction
-            );
-
-            replaceFragmentInternal(fragmentTransaction, screen, fragmentParams, fragment);
-
-            fragmentTransaction.commit();
-        }
-    }
-
-    private void forwardFragmentInternal(
-            @NotNull Command command,
-            @NotNull SupportAppScreen screen,
-            @Nullable FragmentParams fragmentParams,
-            @Nullable Fragment fragment
-    ) {
-        FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction();
-
-        setupFragmentTransaction(
-                command,
-                fragmentManager.findFragmentById(containerId),
-                fragment,
-                fragmentTransaction
-        );
-
-        replaceFragmentInternal(fragmentTransaction, screen, fragmentParams, fragment);
-
-        fragmentTransaction
-                .addToBackStack(screen.getScreenKey())
-                .commit();
-
-        localStackCopy.add(screen.getScreenKey());
+        engine.replace(command, command.getScreen());
     }
 
     private void replaceFragmentInternal(
@@ -213,32 +347,40 @@ public class SupportAppNavigator implements Navigator {
     protected void backTo(@NotNull BackTo command) {
         if (command.getScreen() == null) {
             backToRoot();
-        } else {
-            String key = command.getScreen().getScreenKey();
-            int index = localStackCopy.indexOf(key);
-            int size = localStackCopy.size();
-
-            if (index != -1) {
-                for (int i = 1; i < size - index; i++) {
-                    localStackCopy.removeLast();
-                }
-                fragmentManager.popBackStack(key, 0);
-            } else {
-                backToUnexisting((SupportAppScreen) command.getScreen());
-            }
+        } else if (!engine.backTo(command.getScreen().getScreenKey())) {
+            backToUnexisting((SupportAppScreen) command.getScreen());
         }
     }
 
     private void backToRoot() {
-        fragmentManager.popBackStack(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
-        localStackCopy.clear();
+        engine.backToRoot();
+    }
+
+    /**
+     * Performs {@link SwitchStack} command transition.
+     * Stack container fragments are added to the container with screen keys as tags
+     * and only hidden on switch, so their views and nested back stacks are kept.
+     * The transaction is executed with pending ones in the commit order, so the apply time reported
+     * to the metrics listener is the switch latency.
+     */
+    protected void switchStack(@NotNull SwitchStack command) {
+        engine.switchStack(command, command.getScreen());
+    }
+
+    /**
+     * @return key of the shown stack or null if {@link SwitchStack} wasn't applied by this navigator
+     */
+    @Nullable
+    public String getCurrentStackKey() {
+        return engine.getCurrentStackKey();
     }
 
     /**
      * Override this method to setup fragment transaction {@link FragmentTransaction}.
      * For example: setCustomAnimations(...), addSharedElement(...) or setReorderingAllowed(...)
      *
-     * @param command             current navigation command. Will be only {@link Forward} or {@link Replace}
+     * @param command             current navigation command. Will be only {@link Forward}, {@link Replace}
+     *                            or {@link SwitchStack}
      * @param currentFragment     current fragment in container
      *                            (for {@link Replace} command it will be screen previous in new chain, NOT replaced screen)
      * @param nextFragment        next screen fragment
@@ -264,13 +406,21 @@ public class SupportAppNavigator implements Navigator {
 
     private void checkAndStartActivity(@NotNull SupportAppScreen screen, @NotNull Intent activityIntent, @Nullable Bundle options) {
         // Check if we can start activity
-        if (activityIntent.resolveActivity(activity.getPackageManager()) != null) {
+        if (canResolveActivity(activityIntent)) {
             activity.startActivity(activityIntent, options);
         } else {
             unexistingActivity(screen, activityIntent);
         }
     }
 
+    private boolean canResolveActivity(@NotNull Intent activityIntent) {
+        ActivityResolutionCache cache = resolutionCache;
+        if (cache != null) {
+            return cache.canResolve(activityIntent, activity.getPackageManager());
+        }
+        return activityIntent.resolveActivity(activity.getPackageManager()) != null;
+    }
+
     /**
      * Called when there is no activity to open {@code screenKey}.
      *
@@ -289,7 +439,11 @@ public class SupportAppNavigator implements Navigator {
      */
     @Nullable
     protected Fragment createFragment(@NotNull SupportAppScreen screen) {
-        Fragment fragment = screen.getFragment();
+        FragmentPrewarmCache cache = prewarmCache;
+        Fragment fragment = cache != null ? cache.take(screen) : null;
+        if (fragment == null) {
+            fragment = screen.getFragment();
+        }
 
         if (fragment == null) {
             errorWhileCreatingScreen(screen);
@@ -329,4 +483,128 @@ public class SupportAppNavigator implements Navigator {
     ) {
         throw error;
     }
+
+    /**
+     * Fragment instance or its description created before the back stack is changed.
+     */
+    private static final class PreparedFragment {
+        @Nullable
+        final FragmentParams params;
+        @Nullable
+        final Fragment fragment;
+
+        PreparedFragment(@Nullable FragmentParams params, @Nullable Fragment fragment) {
+            this.params = params;
+            this.fragment = fragment;
+        }
+    }
+
+    private final class SupportFragmentBackend implements FragmentBackend<PreparedFragment> {
+
+        @Override
+        public int getBackStackEntryCount() {
+            return fragmentManager.getBackStackEntryCount();
+        }
+
+        @Nullable
+        @Override
+        public String getBackStackEntryName(int index) {
+            return fragmentManager.getBackStackEntryAt(index).getName();
+        }
+
+        @Override
+        public void executePendingTransactions() {
+            fragmentManager.executePendingTransactions();
+        }
+
+        @Override
+        public void popBackStack() {
+            fragmentManager.popBackStack();
+        }
+
+        @Override
+        public void popBackStack(@NotNull String name) {
+            fragmentManager.popBackStack(name, 0);
+        }
+
+        @Override
+        public void popBackStackToRoot() {
+            fragmentManager.popBackStack(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+        }
+
+        @Override
+        public boolean isFragmentScreen(@NotNull Screen screen) {
+            return SupportAppNavigator.this.isFragmentScreen(screen);
+        }
+
+        @NotNull
+        @Override
+        public PreparedFragment prepareFragment(@NotNull Screen screen) {
+            SupportAppScreen appScreen = (SupportAppScreen) screen;
+            FragmentParams fragmentParams = appScreen.getFragmentParams();
+            Fragment fragment = fragmentParams == null ? createFragment(appScreen) : null;
+            return new PreparedFragment(fragmentParams, fragment);
+        }
+
+        @Override
+        public void commitFragment(@NotNull Command command,
+                                   @NotNull Screen screen,
+                                   @NotNull PreparedFragment prepared,
+                                   boolean addToBackStack,
+                                   boolean reorderingAllowed) {
+            FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction();
+            if (reorderingAllowed && reorderingEnabled) {
+                fragmentTransaction.setReorderingAllowed(true);
+            }
+
+            setupFragmentTransaction(
+                    command,
+                    fragmentManager.findFragmentById(containerId),
+                    prepared.fragment,
+                    fragmentTransaction
+            );
+
+            replaceFragmentInternal(fragmentTransaction, (SupportAppScreen) screen, prepared.params, prepared.fragment);
+
+            if (addToBackStack) {
+                fragmentTransaction.addToBackStack(screen.getScreenKey());
+            }
+            fragmentTransaction.commit();
+        }
+
+        @Override
+        public void switchStack(@NotNull Command command, @NotNull Screen screen, @Nullable String previousKey) {
+            String key = screen.getScreenKey();
+            Fragment current = null;
+            if (previousKey != null) {
+                current = fragmentManager.findFragmentByTag(previousKey);
+            } else {
+                List<Fragment> fragments = fragmentManager.getFragments();
+                for (Fragment fragment : fragments) {
+                    if (fragment.getId() == containerId && !fragment.isHidden()) {
+                        current = fragment;
+                        break;
+                    }
+                }
+            }
+            Fragment next = fragmentManager.findFragmentByTag(key);
+            if (next == null) {
+                next = createFragment((SupportAppScreen) screen);
+            }
+            if (next == current) return;
+
+            FragmentTransaction fragmentTransaction = fragmentManager.beginTransaction();
+            setupFragmentTransaction(command, current, next, fragmentTransaction);
+            if (current != null) {
+                fragmentTransaction.hide(current);
+            }
+            if (next.isAdded()) {
+                fragmentTransaction.show(next);
+            } else {
+                fragmentTransaction.add(containerId, next, key);
+            }
+            fragmentTransaction.commit();
+            fragmentManager.executePendingTransactions();
+        }
+    }
 }
@@ -30,4 +30,16 @@ public abstract class SupportAppScreen extends Screen {
     public FragmentParams getFragmentParams() {
         return null;
     }
+
+    /**
+     * Identifies arguments of the fragment, e.g. an item id, among screens with the same screen key.
+     * A fragment prewarmed by {@link FragmentPrewarmCache} is used for another screen instance
+     * only if both screens return equal non-null keys. Return an empty string if the fragment has no arguments.
+     *
+     * @return arguments key or null to reuse the prewarmed fragment for the same screen instance only
+     */
+    @Nullable
+    public String getArgumentsKey() {
+        return null;
+    }
 }
@@ -15,7 +15,7 @@ import ru.terrakok.cicerone.Screen;
  * But the recommended behavior is to return to the root.
  */
 public class BackTo implements Command {
-    private Screen screen;
+    private final Screen screen;
 
     /**
      * Creates a {@link BackTo} navigation command.
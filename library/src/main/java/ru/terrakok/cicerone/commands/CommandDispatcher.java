@@ -0,0 +1,85 @@
+/*
+ * Created by Konstantin Tskhovrebov (aka @terrakok)
+ */
+
+package ru.terrakok.cicerone.commands;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+
+/**
+ * Registry of command handlers keyed by command class.<br>
+ * A command is dispatched with one map lookup whatever count of command types is registered.
+ * Commands of unregistered classes are handled by the handler of the nearest registered superclass
+ * or implemented interface, the resolved handler is remembered for the class.<br>
+ * Not thread safe, use it on the thread applying commands.
+ */
+public class CommandDispatcher {
+    private static final CommandHandler<Command> NO_HANDLER = new CommandHandler<Command>() {
+        @Override
+        public void handle(@NotNull Command command) {
+        }
+    };
+
+    // registered handlers
+    private final HashMap<Class<?>, CommandHandler<?>> handlers = new HashMap<>();
+    // registered and resolved handlers
+    private final HashMap<Class<?>, CommandHandler<?>> resolved = new HashMap<>();
+
+    /**
+     * Registers the handler of the command type replacing the previous one.
+     *
+     * @param type    command class
+     * @param handler handler of commands of the type and its subclasses
+     */
+    public <C extends Command> void register(@NotNull Class<C> type, @NotNull CommandHandler<? super C> handler) {
+        handlers.put(type, handler);
+        resolved.clear();
+        resolved.putAll(handlers);
+    }
+
+    /**
+     * Passes the command to its handler.
+     *
+     * @param command navigation command
+     * @return false if there is no handler for the command
+     */
+    @SuppressWarnings("unchecked")
+    public boolean dispatch(@NotNull Command command) {
+        Class<?> type = command.getClass();
+        CommandHandler<?> handler = resolved.get(type);
+        if (handler == null) {
+            handler = resolve(type);
+            resolved.put(type, handler);
+        }
+        if (handler == NO_HANDLER) return false;
+
+        ((CommandHandler<Command>) handler).handle(command);
+        return true;
+    }
+
+    @NotNull
+    private CommandHandler<?> resolve(@NotNull Class<?> type) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            CommandHandler<?> handler = handlers.get(c);
+            if (handler != null) return handler;
+
+            for (Class<?> i : c.getInterfaces()) {
+                handler = handlers.get(i);
+                if (handler != null) return handler;
+            }
+        }
+        return NO_HANDLER;
+    }
+
+    /**
+     * @param type command class
+     * @return handler registered for the command class or null
+     */
+    @Nullable
+    public CommandHandler<?> getHandler(@NotNull Class<? extends Command> type) {
+        return handlers.get(type);
+    }
+}
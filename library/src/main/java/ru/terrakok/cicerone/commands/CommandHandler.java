@@ -0,0 +1,17 @@
+/*
+ * Created by Konstantin Tskhovrebov (aka @terrakok)
+ */
+
+package ru.terrakok.cicerone.commands;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Applies navigation commands of one type, see {@link CommandDispatcher}.
+ *
+ * @param <C> command type
+ */
+public interface CommandHandler<C extends Command> {
+
+    void handle(@NotNull C command);
+}
@@ -0,0 +1,97 @@
+/*
+ * Created by Konstantin Tskhovrebov (aka @terrakok)
+ */
+
+package ru.terrakok.cicerone.commands;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Rewrites a navigation command array into the equivalent shorter one
+ * before it reaches a {@link ru.terrakok.cicerone.Navigator}:
+ * <ul>
+ * <li>{@link Forward} followed by {@link Back} is dropped;</li>
+ * <li>{@link Replace} following {@link Forward} merges into one {@link Forward};</li>
+ * <li>{@link BackTo} to the root drops {@link Forward} and {@link BackTo} commands before it;</li>
+ * <li>a new root ({@link BackTo} to the root followed by {@link Replace}) drops
+ * all {@link Replace} commands before it.</li>
+ * </ul>
+ * A {@link Back} is dropped only when it cancels the immediately preceding {@link Forward}.
+ * Other {@link Back} commands and custom commands are barriers: they are kept and nothing is dropped
+ * or merged across them, because {@link Back} on the root screen exits.<br>
+ * Rules are equal in the screens chain model (see {@link ru.terrakok.cicerone.memory.InMemoryNavigator}),
+ * so don't use it if {@link Forward} or {@link Replace} start activities.
+ */
+public final class CommandOptimizer {
+
+    private CommandOptimizer() {
+    }
+
+    /**
+     * @param commands navigation command array
+     * @return optimized command array or the same array if nothing is changed
+     */
+    @NotNull
+    public static Command[] optimize(@NotNull Command[] commands) {
+        if (commands.length < 2) return commands;
+
+        Command[] result = new Command[commands.length];
+        int size = 0;
+        boolean changed = false;
+        for (Command command : commands) {
+            Command last = size > 0 ? result[size - 1] : null;
+            if (command instanceof Back) {
+                if (last instanceof Forward) {
+                    size--;
+                    changed = true;
+                    continue;
+                }
+            } else if (command instanceof Replace) {
+                if (last instanceof Forward) {
+                    result[size - 1] = new Forward(((Replace) command).getScreen());
+                    changed = true;
+                    continue;
+                }
+                if (isBackToRoot(last)) {
+                    int newSize = dropBeforeNewRoot(result, size - 1);
+                    changed |= newSize != size;
+                    size = newSize;
+                }
+            } else if (isBackToRoot(command)) {
+                while (size > 0 && (result[size - 1] instanceof Forward || result[size - 1] instanceof BackTo)) {
+                    size--;
+                    changed = true;
+                }
+            }
+            result[size++] = command;
+        }
+        return changed ? Arrays.copyOf(result, size) : commands;
+    }
+
+    /**
+     * Removes {@link Replace} commands before the {@link BackTo} to the root
+     * up to the nearest command which can't be dropped.
+     *
+     * @return new size of the result
+     */
+    private static int dropBeforeNewRoot(@NotNull Command[] result, int backToRootIndex) {
+        int keep = backToRootIndex;
+        while (keep > 0 && result[keep - 1] instanceof Replace) {
+            keep--;
+        }
+        if (keep == backToRootIndex) return backToRootIndex + 1;
+
+        result[keep] = result[backToRootIndex];
+        for (int i = keep + 1; i <= backToRootIndex; i++) {
+            result[i] = null;
+        }
+        return keep + 1;
+    }
+
+    private static boolean isBackToRoot(@Nullable Command command) {
+        return command instanceof BackTo && ((BackTo) command).getScreen() == null;
+    }
+}
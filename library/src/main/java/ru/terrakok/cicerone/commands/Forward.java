@@ -12,7 +12,7 @@ import ru.terrakok.cicerone.Screen;
  * Opens new screen.
  */
 public class Forward implements Command {
-    private Screen screen;
+    private final Screen screen;
 
     /**
      * Creates a {@link Forward} navigation command.
@@ -13,7 +13,7 @@ import ru.terrakok.cicerone.Screen;
  */
 public class Replace implements Command {
     @NotNull
-    private Screen screen;
+    private final Screen screen;
 
     /**
      * Creates a {@link Replace} navigation command.
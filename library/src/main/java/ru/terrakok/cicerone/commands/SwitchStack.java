@@ -0,0 +1,32 @@
+/*
+ * Created by Konstantin Tskhovrebov (aka @terrakok)
+ */
+
+package ru.terrakok.cicerone.commands;
+
+import org.jetbrains.annotations.NotNull;
+
+import ru.terrakok.cicerone.Screen;
+
+/**
+ * Shows the stack (e.g. a tab) with the key of the screen and hides the current one.
+ * The screen fragment is the stack container, it is created on the first switch
+ * and kept with its views and nested back stack while other stacks are shown.
+ */
+public class SwitchStack implements Command {
+    private final Screen screen;
+
+    /**
+     * Creates a {@link SwitchStack} navigation command.
+     *
+     * @param screen container screen of the stack, its screen key is the stack key
+     */
+    public SwitchStack(@NotNull Screen screen) {
+        this.screen = screen;
+    }
+
+    @NotNull
+    public Screen getScreen() {
+        return screen;
+    }
+}
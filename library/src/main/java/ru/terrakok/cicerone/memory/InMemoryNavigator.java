@@ -0,0 +1,149 @@
+package ru.terrakok.cicerone.memory;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import ru.terrakok.cicerone.ScreenStack;
+import ru.terrakok.cicerone.StackNavigator;
+import ru.terrakok.cicerone.commands.Back;
+import ru.terrakok.cicerone.commands.BackTo;
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.Forward;
+import ru.terrakok.cicerone.commands.Replace;
+
+/**
+ * Navigator implementation which keeps the screens chain in memory.<br>
+ * It doesn't depend on Android, so it is useful to run navigation logic in JVM tests.
+ * It is also the reference model of the predefined navigators:
+ * the root screen is kept out of the stack like a fragment added to the container without the back stack.
+ */
+public class InMemoryNavigator implements StackNavigator {
+
+    protected final ScreenStack stack = new ScreenStack();
+    @Nullable
+    protected String rootKey;
+
+    @Override
+    public void applyCommands(@NotNull Command[] commands) {
+        for (Command command : commands) {
+            try {
+                applyCommand(command);
+            } catch (RuntimeException e) {
+                errorOnApplyCommand(command, e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isAtRoot() {
+        return stack.isEmpty();
+    }
+
+    /**
+     * Perform transition described by the navigation command
+     *
+     * @param command the navigation command to apply
+     */
+    protected void applyCommand(@NotNull Command command) {
+        if (command instanceof Forward) {
+            forward((Forward) command);
+        } else if (command instanceof Replace) {
+            replace((Replace) command);
+        } else if (command instanceof BackTo) {
+            backTo((BackTo) command);
+        } else if (command instanceof Back) {
+            back();
+        }
+    }
+
+    protected void forward(@NotNull Forward command) {
+        stack.push(command.getScreen().getScreenKey());
+    }
+
+    protected void replace(@NotNull Replace command) {
+        String key = command.getScreen().getScreenKey();
+        if (stack.isEmpty()) {
+            rootKey = key;
+        } else {
+            stack.pop();
+            stack.push(key);
+        }
+    }
+
+    protected void back() {
+        if (stack.isEmpty()) {
+            exit();
+        } else {
+            stack.pop();
+        }
+    }
+
+    /**
+     * Performs {@link BackTo} command transition
+     */
+    protected void backTo(@NotNull BackTo command) {
+        if (command.getScreen() == null) {
+            stack.clear();
+        } else {
+            int index = stack.lastIndexOf(command.getScreen().getScreenKey());
+            if (index != -1) {
+                stack.truncate(index + 1);
+            } else {
+                backToUnexisting(command);
+            }
+        }
+    }
+
+    /**
+     * Called when we tried to back to some specific screen (via {@link BackTo} command),
+     * but didn't found it.
+     */
+    protected void backToUnexisting(@NotNull BackTo command) {
+        stack.clear();
+    }
+
+    /**
+     * Called when {@link Back} is applied to the root screen.
+     * Does nothing by default.
+     */
+    protected void exit() {
+    }
+
+    /**
+     * Override this method if you want to handle apply command error.
+     *
+     * @param command command
+     * @param error   error
+     */
+    protected void errorOnApplyCommand(
+            @NotNull Command command,
+            @NotNull RuntimeException error
+    ) {
+        throw error;
+    }
+
+    /**
+     * @return key of the visible screen or null if nothing is opened
+     */
+    @Nullable
+    public String getCurrentKey() {
+        String top = stack.peek();
+        return top != null ? top : rootKey;
+    }
+
+    /**
+     * @return key of the root screen which is replaced when the stack is empty
+     */
+    @Nullable
+    public String getRootKey() {
+        return rootKey;
+    }
+
+    /**
+     * @return screens chain above the root
+     */
+    @NotNull
+    public ScreenStack getStack() {
+        return stack;
+    }
+}
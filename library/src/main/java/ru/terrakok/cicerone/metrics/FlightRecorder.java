@@ -0,0 +1,192 @@
+package ru.terrakok.cicerone.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+import ru.terrakok.cicerone.commands.BackTo;
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.Forward;
+import ru.terrakok.cicerone.commands.Replace;
+import ru.terrakok.cicerone.commands.SwitchStack;
+
+/**
+ * Ring buffer of the last applied commands grouped by command arrays.
+ * Each record keeps the command type, the screen key, the apply time and duration,
+ * the wait time of its array and the error if applying has failed.<br>
+ * Recording doesn't allocate: records are stored in preallocated arrays.
+ * Dump it on demand with {@link #dump(Appendable)} or on crash with {@link #installCrashDump(Appendable)}.<br>
+ * Set it as the metrics listener to the {@link ru.terrakok.cicerone.Cicerone} and to the navigator.
+ * Use {@code delegate} to pass measurements further, e.g. to {@link NavigationMetrics}.
+ */
+public class FlightRecorder implements NavigationMetricsListener {
+    private final int capacity;
+    @Nullable
+    private final NavigationMetricsListener delegate;
+
+    private final long[] batchIds;
+    private final long[] waitTimes;
+    private final Class<?>[] types;
+    private final String[] screenKeys;
+    private final long[] endTimes;
+    private final long[] durations;
+    private final RuntimeException[] errors;
+
+    private long batchId;
+    private long batchWaitTime;
+    private int next;
+    private int count;
+
+    /**
+     * @param capacity max count of recorded commands
+     */
+    public FlightRecorder(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity max count of recorded commands
+     * @param delegate listener receiving all measurements after the recorder
+     */
+    public FlightRecorder(int capacity, @Nullable NavigationMetricsListener delegate) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.delegate = delegate;
+        batchIds = new long[capacity];
+        waitTimes = new long[capacity];
+        types = new Class<?>[capacity];
+        screenKeys = new String[capacity];
+        endTimes = new long[capacity];
+        durations = new long[capacity];
+        errors = new RuntimeException[capacity];
+    }
+
+    @Override
+    public void onBatchPassed(int batchSize, long waitNanos) {
+        synchronized (this) {
+            batchId++;
+            batchWaitTime = waitNanos;
+        }
+        if (delegate != null) {
+            delegate.onBatchPassed(batchSize, waitNanos);
+        }
+    }
+
+    @Override
+    public void onPendingDepthChanged(int depth) {
+        if (delegate != null) {
+            delegate.onPendingDepthChanged(depth);
+        }
+    }
+
+    @Override
+    public void onCommandApplied(@NotNull Command command, long durationNanos, @Nullable RuntimeException error) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            batchIds[next] = batchId;
+            waitTimes[next] = batchWaitTime;
+            types[next] = command.getClass();
+            screenKeys[next] = getScreenKey(command);
+            endTimes[next] = now;
+            durations[next] = durationNanos;
+            errors[next] = error;
+            next = (next + 1) % capacity;
+            if (count < capacity) count++;
+        }
+        if (delegate != null) {
+            delegate.onCommandApplied(command, durationNanos, error);
+        }
+    }
+
+    /**
+     * Writes records from the oldest to the newest, one command per line.
+     * Times are printed in milliseconds before the dump.
+     */
+    public synchronized void dump(@NotNull Appendable out) throws IOException {
+        long now = System.nanoTime();
+        out.append("Navigation flight recorder, last ").append(String.valueOf(count)).append(" commands\n");
+        long lastBatch = -1;
+        for (int i = 0; i < count; i++) {
+            int index = (next - count + i + capacity) % capacity;
+            if (batchIds[index] != lastBatch) {
+                lastBatch = batchIds[index];
+                out.append("batch #").append(String.valueOf(lastBatch))
+                        .append(", waited ").append(toMillis(waitTimes[index])).append(" ms\n");
+            }
+            out.append("  ").append(types[index].getSimpleName());
+            if (screenKeys[index] != null) {
+                out.append(' ').append(screenKeys[index]);
+            }
+            out.append(", -").append(toMillis(now - endTimes[index])).append(" ms")
+                    .append(", took ").append(toMillis(durations[index])).append(" ms");
+            if (errors[index] != null) {
+                out.append(", error: ").append(errors[index].toString());
+            }
+            out.append('\n');
+        }
+    }
+
+    @NotNull
+    public String dump() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            dump(builder);
+        } catch (IOException e) {
+            // StringBuilder doesn't throw
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Dumps records to {@code out} when a thread dies because of an uncaught exception.
+     * The previous default uncaught exception handler is called after that.
+     */
+    public void installCrashDump(@NotNull final Appendable out) {
+        final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread thread, Throwable throwable) {
+                try {
+                    dump(out);
+                } catch (Throwable ignored) {
+                    // the crash must be reported anyway
+                }
+                if (previous != null) {
+                    previous.uncaughtException(thread, throwable);
+                }
+            }
+        });
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < capacity; i++) {
+            types[i] = null;
+            screenKeys[i] = null;
+            errors[i] = null;
+        }
+        next = 0;
+        count = 0;
+    }
+
+    @Nullable
+    private static String getScreenKey(@NotNull Command command) {
+        if (command instanceof Forward) {
+            return ((Forward) command).getScreen().getScreenKey();
+        } else if (command instanceof Replace) {
+            return ((Replace) command).getScreen().getScreenKey();
+        } else if (command instanceof BackTo && ((BackTo) command).getScreen() != null) {
+            return ((BackTo) command).getScreen().getScreenKey();
+        } else if (command instanceof SwitchStack) {
+            return ((SwitchStack) command).getScreen().getScreenKey();
+        }
+        return null;
+    }
+
+    @NotNull
+    private static String toMillis(long nanos) {
+        return String.valueOf(nanos / 1000 / 1000.0);
+    }
+}
@@ -0,0 +1,92 @@
+package ru.terrakok.cicerone.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram with fixed buckets. Recording is thread-safe and doesn't allocate.<br>
+ * Bucket {@code i} counts values {@code <= bounds[i]}, the last bucket counts values greater than all bounds.
+ */
+public class Histogram {
+    private final long[] bounds;
+    private final AtomicLongArray counts;
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * @param bounds ascending upper bounds of buckets
+     */
+    public Histogram(@NotNull long... bounds) {
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Bounds must be ascending: " + Arrays.toString(bounds));
+            }
+        }
+        this.bounds = bounds.clone();
+        this.counts = new AtomicLongArray(bounds.length + 1);
+    }
+
+    /**
+     * Creates histogram with bounds {@code first, first * 2, first * 4, ...}.
+     *
+     * @param first       bound of the first bucket
+     * @param bucketCount count of bounds
+     */
+    @NotNull
+    public static Histogram exponential(long first, int bucketCount) {
+        long[] bounds = new long[bucketCount];
+        long bound = first;
+        for (int i = 0; i < bucketCount; i++) {
+            bounds[i] = bound;
+            bound *= 2;
+        }
+        return new Histogram(bounds);
+    }
+
+    public void record(long value) {
+        int index = Arrays.binarySearch(bounds, value);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        counts.incrementAndGet(index);
+        sum.addAndGet(value);
+    }
+
+    @NotNull
+    public long[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * @return copy of bucket counts, its length is {@code getBounds().length + 1}
+     */
+    @NotNull
+    public long[] getCounts() {
+        long[] result = new long[counts.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        sum.set(0);
+    }
+}
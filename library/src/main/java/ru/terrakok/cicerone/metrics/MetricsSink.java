@@ -0,0 +1,16 @@
+package ru.terrakok.cicerone.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Destination of {@link NavigationMetrics#export(MetricsSink) exported} metrics,
+ * e.g. logcat or an analytics backend.
+ */
+public interface MetricsSink {
+
+    /**
+     * @param name      metric name
+     * @param histogram histogram, read it with {@link Histogram#getCounts()}
+     */
+    void onHistogram(@NotNull String name, @NotNull Histogram histogram);
+}
@@ -0,0 +1,86 @@
+package ru.terrakok.cicerone.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import ru.terrakok.cicerone.commands.Back;
+import ru.terrakok.cicerone.commands.BackTo;
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.Forward;
+import ru.terrakok.cicerone.commands.Replace;
+import ru.terrakok.cicerone.commands.SwitchStack;
+
+/**
+ * {@link NavigationMetricsListener} which collects measurements to histograms.<br>
+ * Set the same instance to the {@link ru.terrakok.cicerone.Cicerone} and to the navigator
+ * and call {@link #export(MetricsSink)} when metrics are needed.
+ */
+public class NavigationMetrics implements NavigationMetricsListener {
+    public static final String WAIT_TIME = "wait_time_ns";
+    public static final String BATCH_SIZE = "batch_size";
+    public static final String PENDING_DEPTH = "pending_depth";
+    public static final String APPLY_TIME_PREFIX = "apply_time_ns.";
+    // apply time of SwitchStack commands, i.e. the tab switch latency
+    public static final String SWITCH_STACK_TIME = APPLY_TIME_PREFIX + "switch_stack";
+
+    private static final String[] COMMAND_TYPES = {"forward", "replace", "back_to", "back", "switch_stack", "other"};
+
+    // 1us .. ~1s
+    private final Histogram waitTime = Histogram.exponential(1000, 21);
+    private final Histogram batchSize = Histogram.exponential(1, 8);
+    private final Histogram pendingDepth = Histogram.exponential(1, 12);
+    // per command type in order of COMMAND_TYPES, 1us .. ~1s
+    private final Histogram[] applyTime = new Histogram[COMMAND_TYPES.length];
+
+    public NavigationMetrics() {
+        for (int i = 0; i < applyTime.length; i++) {
+            applyTime[i] = Histogram.exponential(1000, 21);
+        }
+    }
+
+    @Override
+    public void onBatchPassed(int batchSize, long waitNanos) {
+        this.batchSize.record(batchSize);
+        waitTime.record(waitNanos);
+    }
+
+    @Override
+    public void onPendingDepthChanged(int depth) {
+        pendingDepth.record(depth);
+    }
+
+    @Override
+    public void onCommandApplied(@NotNull Command command, long durationNanos, @Nullable RuntimeException error) {
+        applyTime[typeIndex(command)].record(durationNanos);
+    }
+
+    /**
+     * Passes all histograms to the sink.
+     */
+    public void export(@NotNull MetricsSink sink) {
+        sink.onHistogram(WAIT_TIME, waitTime);
+        sink.onHistogram(BATCH_SIZE, batchSize);
+        sink.onHistogram(PENDING_DEPTH, pendingDepth);
+        for (int i = 0; i < applyTime.length; i++) {
+            sink.onHistogram(APPLY_TIME_PREFIX + COMMAND_TYPES[i], applyTime[i]);
+        }
+    }
+
+    public void reset() {
+        waitTime.reset();
+        batchSize.reset();
+        pendingDepth.reset();
+        for (Histogram histogram : applyTime) {
+            histogram.reset();
+        }
+    }
+
+    private static int typeIndex(@NotNull Command command) {
+        if (command instanceof Forward) return 0;
+        if (command instanceof Replace) return 1;
+        if (command instanceof BackTo) return 2;
+        if (command instanceof Back) return 3;
+        if (command instanceof SwitchStack) return 4;
+        return 5;
+    }
+}
@@ -0,0 +1,39 @@
+package ru.terrakok.cicerone.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import ru.terrakok.cicerone.commands.Command;
+
+/**
+ * Receives measurements of the navigation pipeline.
+ * Callbacks are called on the thread passing commands to the navigator, so they must be cheap.
+ * See {@link NavigationMetrics} for the default implementation.
+ */
+public interface NavigationMetricsListener {
+
+    /**
+     * Called by the command buffer before passing the command array to the navigator.
+     *
+     * @param batchSize count of commands in the array
+     * @param waitNanos how long the oldest of the commands waited in the buffer
+     */
+    void onBatchPassed(int batchSize, long waitNanos);
+
+    /**
+     * Called by the command buffer when the count of command arrays waiting for a navigator is changed.
+     *
+     * @param depth count of pending command arrays
+     */
+    void onPendingDepthChanged(int depth);
+
+    /**
+     * Called by the navigator after the command is applied.
+     *
+     * @param command       applied command
+     * @param durationNanos apply duration
+     * @param error         error thrown while applying the command or null,
+     *                      it is passed to the navigator error handler after this call
+     */
+    void onCommandApplied(@NotNull Command command, long durationNanos, @Nullable RuntimeException error);
+}
@@ -0,0 +1,18 @@
+package ru.terrakok.cicerone.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+
+import ru.terrakok.cicerone.Screen;
+
+/**
+ * Writes screens of the app to snapshots and creates them back.
+ * Write a type tag with {@link SnapshotWriter#writeVarInt(int)} before screen arguments
+ * if there are several screen types.
+ */
+public interface ScreenCodec {
+
+    void write(@NotNull Screen screen, @NotNull SnapshotWriter writer);
+
+    @NotNull
+    Screen read(@NotNull SnapshotReader reader);
+}
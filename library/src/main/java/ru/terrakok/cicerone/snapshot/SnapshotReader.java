@@ -0,0 +1,141 @@
+package ru.terrakok.cicerone.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+
+import ru.terrakok.cicerone.Screen;
+import ru.terrakok.cicerone.commands.Back;
+import ru.terrakok.cicerone.commands.BackTo;
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.Forward;
+import ru.terrakok.cicerone.commands.Replace;
+import ru.terrakok.cicerone.commands.SwitchStack;
+
+/**
+ * Reads the snapshot written by the {@link SnapshotWriter} in one pass.
+ * Values must be read in the order they were written.<br>
+ * Malformed or truncated snapshots and snapshots of other format versions
+ * are rejected with {@link IllegalArgumentException}.
+ */
+public final class SnapshotReader {
+    private final ScreenCodec screenCodec;
+    private final byte[] snapshot;
+    private final ArrayList<String> strings = new ArrayList<>();
+    private int position;
+
+    public SnapshotReader(@NotNull byte[] snapshot, @NotNull ScreenCodec screenCodec) {
+        this.snapshot = snapshot;
+        this.screenCodec = screenCodec;
+        int version = readByte();
+        if (version != SnapshotWriter.VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version: " + version);
+        }
+    }
+
+    public int readByte() {
+        if (position >= snapshot.length) {
+            throw new IllegalArgumentException("Snapshot is truncated");
+        }
+        return snapshot[position++] & 0xFF;
+    }
+
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    public int readVarInt() {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint at " + position);
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint at " + position);
+    }
+
+    /**
+     * Reads the non-negative count, e.g. a collection size.
+     */
+    public int readCount() {
+        int count = readVarInt();
+        if (count < 0 || count > snapshot.length - position) {
+            // every counted item takes at least one byte
+            throw new IllegalArgumentException("Malformed count: " + count);
+        }
+        return count;
+    }
+
+    @Nullable
+    public String readString() {
+        int tag = readVarInt();
+        if (tag == SnapshotWriter.STRING_NULL) return null;
+        if (tag == SnapshotWriter.STRING_NEW) {
+            int length = readCount();
+            String value = new String(snapshot, position, length, SnapshotWriter.UTF_8);
+            position += length;
+            strings.add(value);
+            return value;
+        }
+        int index = tag - SnapshotWriter.STRING_REF;
+        if (index < 0 || index >= strings.size()) {
+            throw new IllegalArgumentException("Unknown string reference: " + index);
+        }
+        return strings.get(index);
+    }
+
+    @NotNull
+    public Screen readScreen() {
+        return screenCodec.read(this);
+    }
+
+    @NotNull
+    public Command readCommand() {
+        int tag = readByte();
+        switch (tag) {
+            case SnapshotWriter.COMMAND_FORWARD:
+                return new Forward(readScreen());
+            case SnapshotWriter.COMMAND_REPLACE:
+                return new Replace(readScreen());
+            case SnapshotWriter.COMMAND_BACK_TO:
+                return new BackTo(readScreen());
+            case SnapshotWriter.COMMAND_BACK_TO_ROOT:
+                return new BackTo(null);
+            case SnapshotWriter.COMMAND_BACK:
+                return new Back();
+            case SnapshotWriter.COMMAND_SWITCH_STACK:
+                return new SwitchStack(readScreen());
+            default:
+                throw new IllegalArgumentException("Unknown command tag: " + tag);
+        }
+    }
+
+    /**
+     * @return true if not all bytes of the snapshot were read
+     */
+    public boolean hasRemaining() {
+        return position < snapshot.length;
+    }
+
+    /**
+     * Checks that the whole snapshot was read, so appended or concatenated data isn't accepted.
+     *
+     * @throws IllegalArgumentException if there are unread bytes
+     */
+    public void requireEnd() {
+        if (position < snapshot.length) {
+            throw new IllegalArgumentException("Unexpected trailing bytes: " + (snapshot.length - position));
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package ru.terrakok.cicerone.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import ru.terrakok.cicerone.Screen;
+import ru.terrakok.cicerone.commands.Back;
+import ru.terrakok.cicerone.commands.BackTo;
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.Forward;
+import ru.terrakok.cicerone.commands.Replace;
+import ru.terrakok.cicerone.commands.SwitchStack;
+
+/**
+ * Writes navigation state to the compact binary snapshot read by the {@link SnapshotReader}.<br>
+ * The snapshot starts with the format version. Numbers are written as varints,
+ * every distinct string is written once and then referenced by its index,
+ * so repeated screen keys cost one or two bytes.
+ */
+public final class SnapshotWriter {
+    static final int VERSION = 1;
+
+    static final int STRING_NULL = 0;
+    static final int STRING_NEW = 1;
+    // references to written strings start from this value
+    static final int STRING_REF = 2;
+
+    static final int COMMAND_FORWARD = 0;
+    static final int COMMAND_REPLACE = 1;
+    static final int COMMAND_BACK_TO = 2;
+    static final int COMMAND_BACK_TO_ROOT = 3;
+    static final int COMMAND_BACK = 4;
+    static final int COMMAND_SWITCH_STACK = 5;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ScreenCodec screenCodec;
+    private final HashMap<String, Integer> strings = new HashMap<>();
+    private byte[] buffer = new byte[64];
+    private int size;
+
+    public SnapshotWriter(@NotNull ScreenCodec screenCodec) {
+        this.screenCodec = screenCodec;
+        writeByte(VERSION);
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) value;
+    }
+
+    public void writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * Writes the value in 1-5 bytes, small non-negative values are the shortest.
+     */
+    public void writeVarInt(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * Writes the value in 1-10 bytes, small non-negative values are the shortest.
+     */
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    public void writeString(@Nullable String value) {
+        if (value == null) {
+            writeVarInt(STRING_NULL);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeVarInt(STRING_REF + index);
+            return;
+        }
+        strings.put(value, strings.size());
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarInt(STRING_NEW);
+        writeVarInt(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    public void writeScreen(@NotNull Screen screen) {
+        screenCodec.write(screen, this);
+    }
+
+    /**
+     * Writes the standard command.
+     *
+     * @throws IllegalArgumentException for custom commands
+     */
+    public void writeCommand(@NotNull Command command) {
+        if (command instanceof Forward) {
+            writeByte(COMMAND_FORWARD);
+            writeScreen(((Forward) command).getScreen());
+        } else if (command instanceof Replace) {
+            writeByte(COMMAND_REPLACE);
+            writeScreen(((Replace) command).getScreen());
+        } else if (command instanceof BackTo) {
+            Screen screen = ((BackTo) command).getScreen();
+            if (screen == null) {
+                writeByte(COMMAND_BACK_TO_ROOT);
+            } else {
+                writeByte(COMMAND_BACK_TO);
+                writeScreen(screen);
+            }
+        } else if (command instanceof Back) {
+            writeByte(COMMAND_BACK);
+        } else if (command instanceof SwitchStack) {
+            writeByte(COMMAND_SWITCH_STACK);
+            writeScreen(((SwitchStack) command).getScreen());
+        } else {
+            throw new IllegalArgumentException("Can't write the command: " + command.getClass().getName());
+        }
+    }
+
+    /**
+     * @return count of written bytes
+     */
+    public int size() {
+        return size;
+    }
+
+    @NotNull
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void ensureCapacity(int count) {
+        if (size + count > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + count));
+        }
+    }
+}
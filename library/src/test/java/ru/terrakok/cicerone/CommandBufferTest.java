@@ -0,0 +1,150 @@
+package ru.terrakok.cicerone;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.memory.CountingNavigator;
+import ru.terrakok.cicerone.memory.TestScreen;
+import ru.terrakok.cicerone.metrics.NavigationMetricsListener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CommandBufferTest {
+
+    @Test
+    public void attachableNavigatorIsNotifiedOnSetAndRemove() {
+        List<String> events = new ArrayList<>();
+        RecordingNavigator first = new RecordingNavigator("first", events);
+        RecordingNavigator second = new RecordingNavigator("second", events);
+        NavigatorHolder holder = Cicerone.create().getNavigatorHolder();
+
+        holder.setNavigator(first);
+        holder.setNavigator(first);
+        holder.setNavigator(second);
+        holder.removeNavigator();
+        holder.removeNavigator();
+
+        assertEquals("[first attached, first detached, second attached, second detached]", events.toString());
+    }
+
+    @Test
+    public void failFastOverflowIsThrownToCaller() {
+        final List<Runnable> tasks = new ArrayList<>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+        Cicerone<Router> cicerone = Cicerone.create(new Router(), executor, 2, OverflowPolicy.FAIL_FAST);
+        cicerone.getRouter().navigateTo(new TestScreen("a"));
+        cicerone.getRouter().navigateTo(new TestScreen("b"));
+        try {
+            cicerone.getRouter().navigateTo(new TestScreen("c"));
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        runAll(tasks);
+        assertEquals(2, cicerone.getPendingCommandsCount());
+        CountingNavigator navigator = new CountingNavigator();
+        cicerone.getNavigatorHolder().setNavigator(navigator);
+        runAll(tasks);
+        assertEquals("root=null, stack=[a, b], exits=0", navigator.getState());
+    }
+
+    @Test
+    public void commandsQueuedBeforeNavigatorErrorArePassed() {
+        final Cicerone<Router> cicerone = Cicerone.create();
+        CountingNavigator navigator = new CountingNavigator() {
+            @Override
+            public void applyCommands(Command[] commands) {
+                super.applyCommands(commands);
+                if (getStack().size() == 1) {
+                    cicerone.getRouter().navigateTo(new TestScreen("b"));
+                    throw new IllegalStateException();
+                }
+            }
+        };
+        cicerone.getNavigatorHolder().setNavigator(navigator);
+        try {
+            cicerone.getRouter().navigateTo(new TestScreen("a"));
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        assertEquals("root=null, stack=[a, b], exits=0", navigator.getState());
+    }
+
+    @Test
+    public void waitTimeIsMeasuredPerArray() throws InterruptedException {
+        final List<Runnable> tasks = new ArrayList<>();
+        Cicerone<Router> cicerone = Cicerone.create(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        });
+        final List<Long> waits = new ArrayList<>();
+        cicerone.setMetricsListener(new NavigationMetricsListener() {
+            @Override
+            public void onBatchPassed(int batchSize, long waitNanos) {
+                waits.add(waitNanos);
+            }
+
+            @Override
+            public void onPendingDepthChanged(int depth) {
+            }
+
+            @Override
+            public void onCommandApplied(Command command, long durationNanos, RuntimeException error) {
+            }
+        });
+        cicerone.getNavigatorHolder().setNavigator(new CountingNavigator());
+        runAll(tasks);
+
+        cicerone.getRouter().navigateTo(new TestScreen("a"));
+        Thread.sleep(20);
+        cicerone.getRouter().navigateTo(new TestScreen("b"));
+        runAll(tasks);
+
+        assertEquals(2, waits.size());
+        assertTrue(waits.toString(), waits.get(1) < waits.get(0));
+    }
+
+    private static void runAll(List<Runnable> tasks) {
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+    }
+
+    private static final class RecordingNavigator implements AttachableNavigator {
+        private final String name;
+        private final List<String> events;
+
+        RecordingNavigator(String name, List<String> events) {
+            this.name = name;
+            this.events = events;
+        }
+
+        @Override
+        public void applyCommands(Command[] commands) {
+        }
+
+        @Override
+        public void onAttach() {
+            events.add(name + " attached");
+        }
+
+        @Override
+        public void onDetach() {
+            events.add(name + " detached");
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ru.terrakok.cicerone;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ru.terrakok.cicerone.commands.Back;
+import ru.terrakok.cicerone.commands.BackTo;
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.Forward;
+import ru.terrakok.cicerone.commands.Replace;
+import ru.terrakok.cicerone.memory.CountingNavigator;
+import ru.terrakok.cicerone.memory.RandomCommands;
+import ru.terrakok.cicerone.memory.TestScreen;
+
+import static org.junit.Assert.assertEquals;
+
+public class PendingCommandsTest {
+    private static final int ITERATIONS = 100000;
+
+    @Test
+    public void compactedQueueIsEquivalentInScreensChainModel() {
+        RandomCommands random = new RandomCommands(7);
+        for (int i = 0; i < ITERATIONS; i++) {
+            List<Command[]> arrays = random.nextArrays(6, 4);
+            assertEquals(RandomCommands.toString(arrays),
+                    CountingNavigator.replay(arrays),
+                    CountingNavigator.replay(compact(arrays)));
+        }
+    }
+
+    @Test
+    public void finishedChainDoesNotDropNewRoot() {
+        List<Command[]> arrays = Arrays.asList(
+                new Command[]{new BackTo(null), new Replace(new TestScreen("c"))},
+                new Command[]{new BackTo(null), new Back()}
+        );
+        assertEquals("root=c, stack=[], exits=1", CountingNavigator.replay(compact(arrays)));
+    }
+
+    @Test
+    public void exitBeforeNewRootIsKept() {
+        List<Command[]> arrays = Arrays.asList(
+                new Command[]{new Back()},
+                new Command[]{new BackTo(null), new Replace(new TestScreen("c"))}
+        );
+        assertEquals(2, compact(arrays).size());
+    }
+
+    @Test
+    public void rootIsKeptInQueueOfCapacityOne() {
+        PendingCommands pending = new PendingCommands();
+        pending.setCapacity(1, OverflowPolicy.COLLAPSE_TO_LAST_ROOT);
+        pending.add(new Command[]{new BackTo(null), new Replace(new TestScreen("c"))}, false);
+        pending.add(new Command[]{new Forward(new TestScreen("d"))}, false);
+
+        assertEquals(1, pending.size());
+        assertEquals(2, pending.getRetainedCommands());
+        assertEquals(1, pending.getDroppedCount());
+        assertEquals("root=c, stack=[], exits=0", CountingNavigator.replay(poll(pending)));
+    }
+
+    @Test
+    public void arrayAfterRootIsDroppedFromFullQueue() {
+        PendingCommands pending = new PendingCommands();
+        pending.setCapacity(2, OverflowPolicy.COLLAPSE_TO_LAST_ROOT);
+        pending.add(new Command[]{new BackTo(null), new Replace(new TestScreen("c"))}, false);
+        pending.add(new Command[]{new Forward(new TestScreen("d"))}, false);
+        pending.add(new Command[]{new Forward(new TestScreen("e"))}, false);
+
+        assertEquals(2, pending.size());
+        assertEquals(3, pending.getRetainedCommands());
+        assertEquals(1, pending.getDroppedCount());
+        assertEquals("root=c, stack=[e], exits=0", CountingNavigator.replay(poll(pending)));
+    }
+
+    private static List<Command[]> compact(List<Command[]> arrays) {
+        PendingCommands pending = new PendingCommands();
+        for (Command[] commands : arrays) {
+            pending.add(commands, true);
+        }
+        return poll(pending);
+    }
+
+    private static List<Command[]> poll(PendingCommands pending) {
+        List<Command[]> result = new ArrayList<>();
+        Command[] commands;
+        while ((commands = pending.poll()) != null) {
+            result.add(commands);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,177 @@
+package ru.terrakok.cicerone.android;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.List;
+
+import ru.terrakok.cicerone.Screen;
+import ru.terrakok.cicerone.commands.Back;
+import ru.terrakok.cicerone.commands.BackTo;
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.Forward;
+import ru.terrakok.cicerone.commands.Replace;
+import ru.terrakok.cicerone.memory.CountingNavigator;
+import ru.terrakok.cicerone.memory.RandomCommands;
+import ru.terrakok.cicerone.memory.TestScreen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NavigationEngineTest {
+    private static final int ITERATIONS = 20000;
+
+    @Test
+    public void engineMatchesInMemoryNavigator() {
+        checkAgainstModel(false, false);
+    }
+
+    @Test
+    public void engineWithLazyChainsMatchesInMemoryNavigator() {
+        checkAgainstModel(true, false);
+    }
+
+    @Test
+    public void engineWithDeferredFlushMatchesInMemoryNavigator() {
+        checkAgainstModel(false, true);
+        checkAgainstModel(true, true);
+    }
+
+    @Test
+    public void deferredTransactionsAreExecutedInOrder() {
+        EngineNavigator navigator = new EngineNavigator(false, true);
+        navigator.applyCommands(new Command[]{new Forward(new TestScreen("a"))});
+        navigator.applyCommands(new Command[]{new Forward(new TestScreen("b"))});
+        // the first forward is executed before the second one is committed
+        assertEquals("[a]", navigator.backend.getEntries().toString());
+        navigator.applyCommands(new Command[]{new Back()});
+        assertEquals("[a]", navigator.engine.getStack().toString());
+        assertTrue(navigator.backend.hasPendingTransactions());
+
+        navigator.backend.executePendingTransactions();
+        assertEquals("[a]", navigator.backend.getEntries().toString());
+        assertEquals("[a]", navigator.engine.getStack().toString());
+    }
+
+    @Test
+    public void stackIsNotCopiedWhileFragmentManagerIsBehind() {
+        EngineNavigator navigator = new EngineNavigator(false, true);
+        navigator.applyCommands(new Command[]{new Forward(new TestScreen("a"))});
+        // e.g. the navigator is set again before the transaction is executed
+        navigator.engine.onListenerAttached();
+        navigator.applyCommands(new Command[]{new Forward(new TestScreen("b"))});
+
+        navigator.backend.executePendingTransactions();
+        assertEquals("[a, b]", navigator.backend.getEntries().toString());
+        assertEquals("[a, b]", navigator.engine.getStack().toString());
+    }
+
+    @Test
+    public void lazyChainCreatesTopFragmentOnly() {
+        EngineNavigator navigator = new EngineNavigator(true);
+        Command[] chain = new Command[6];
+        for (int i = 0; i < chain.length; i++) {
+            chain[i] = new Forward(new TestScreen("screen_" + i));
+        }
+        navigator.applyCommands(chain);
+
+        assertEquals(6, navigator.engine.getStack().size());
+        assertEquals(1, navigator.backend.getPreparedCount());
+        assertEquals(1, navigator.backend.getEntries().size());
+    }
+
+    @Test
+    public void ownChangesDontValidateStack() {
+        EngineNavigator navigator = new EngineNavigator(false);
+        navigator.applyCommands(new Command[]{new Forward(new TestScreen("a"))});
+        navigator.applyCommands(new Command[]{new Forward(new TestScreen("b")), new Forward(new TestScreen("c"))});
+        navigator.applyCommands(new Command[]{new Back()});
+        navigator.applyCommands(new Command[]{new Replace(new TestScreen("d"))});
+        assertEquals(0, navigator.backend.getNameReadCount());
+
+        navigator.backend.popExternally();
+        navigator.applyCommands(new Command[]{new Forward(new TestScreen("e"))});
+        assertEquals("[a, e]", navigator.backend.getEntries().toString());
+        assertEquals(navigator.backend.getEntries().toString(), navigator.engine.getStack().toString());
+        assertTrue(navigator.backend.getNameReadCount() > 0);
+    }
+
+    private static void checkAgainstModel(boolean lazyChains, boolean deferredFlush) {
+        RandomCommands random = new RandomCommands((lazyChains ? 11 : 3) + (deferredFlush ? 5 : 0));
+        for (int i = 0; i < ITERATIONS; i++) {
+            List<Command[]> arrays = random.nextArrays(6, 5);
+            CountingNavigator model = new CountingNavigator();
+            EngineNavigator navigator = new EngineNavigator(lazyChains, deferredFlush);
+            for (Command[] commands : arrays) {
+                model.applyCommands(commands);
+                navigator.applyCommands(commands);
+            }
+            assertEquals(RandomCommands.toString(arrays),
+                    "stack=" + model.getStack() + ", exits=" + model.getExitCount(),
+                    "stack=" + navigator.engine.getStack() + ", exits=" + navigator.exitCount);
+
+            // a lazy root is committed when it becomes visible
+            Command[] backToRoot = {new BackTo(null)};
+            model.applyCommands(backToRoot);
+            navigator.applyCommands(backToRoot);
+            navigator.backend.executePendingTransactions();
+            assertEquals(RandomCommands.toString(arrays), model.getState(), navigator.getState());
+        }
+    }
+
+    /**
+     * Navigator over the engine which applies commands like the fragment navigators.
+     */
+    private static final class EngineNavigator implements NavigationEngine.CommandApplier {
+        final StubFragmentBackend backend;
+        final NavigationEngine<Screen> engine;
+        int exitCount;
+
+        EngineNavigator(boolean lazyChains) {
+            this(lazyChains, false);
+        }
+
+        /**
+         * @param deferredFlush true to defer flushes of the backend executing transactions asynchronously
+         */
+        EngineNavigator(boolean lazyChains, boolean deferredFlush) {
+            backend = new StubFragmentBackend(deferredFlush);
+            engine = new NavigationEngine<>(backend);
+            engine.setLazyChains(lazyChains);
+            engine.setDeferredFlush(deferredFlush);
+            backend.setEngine(engine);
+        }
+
+        void applyCommands(@NotNull Command[] commands) {
+            engine.beginBatch();
+            engine.applyPlan(engine.planCommands(commands), this);
+        }
+
+        @Override
+        public void applyCommand(@NotNull Command command) {
+            if (command instanceof Forward) {
+                engine.forward(command, ((Forward) command).getScreen());
+            } else if (command instanceof Replace) {
+                engine.replace(command, ((Replace) command).getScreen());
+            } else if (command instanceof BackTo) {
+                Screen screen = ((BackTo) command).getScreen();
+                if (screen == null || !engine.backTo(screen.getScreenKey())) {
+                    engine.backToRoot();
+                }
+            } else if (command instanceof Back) {
+                if (!engine.back()) {
+                    exitCount++;
+                }
+            }
+        }
+
+        @Override
+        public void errorOnApplyCommand(@NotNull Command command, @NotNull RuntimeException error) {
+            throw error;
+        }
+
+        String getState() {
+            return "root=" + backend.getRootKey() + ", stack=" + engine.getStack() + ", exits=" + exitCount;
+        }
+    }
+}
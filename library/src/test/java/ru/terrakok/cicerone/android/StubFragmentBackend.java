@@ -0,0 +1,188 @@
+package ru.terrakok.cicerone.android;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ru.terrakok.cicerone.Screen;
+import ru.terrakok.cicerone.commands.Command;
+
+/**
+ * Fragment backend keeping back stack entry names in a list, prepared fragments are screens.
+ * Transactions are executed at once or, in the asynchronous mode, queued until {@link #executePendingTransactions()}
+ * like in the fragment manager. Back stack changes are reported to the engine set by {@link #setEngine}
+ * when transactions are executed.
+ */
+public class StubFragmentBackend implements FragmentBackend<Screen> {
+    private final boolean async;
+    private final ArrayList<Runnable> pendingTransactions = new ArrayList<>();
+    private final ArrayList<String> entries = new ArrayList<>();
+    @Nullable
+    private NavigationEngine<?> engine;
+    private int nameReadCount;
+    private boolean changed;
+    // key of the fragment added without the back stack
+    @Nullable
+    private String rootKey;
+    private int preparedCount;
+
+    public StubFragmentBackend() {
+        this(false);
+    }
+
+    /**
+     * @param async true to queue transactions until {@link #executePendingTransactions()}
+     */
+    public StubFragmentBackend(boolean async) {
+        this.async = async;
+    }
+
+    @Override
+    public int getBackStackEntryCount() {
+        return entries.size();
+    }
+
+    @Nullable
+    @Override
+    public String getBackStackEntryName(int index) {
+        nameReadCount++;
+        return entries.get(index);
+    }
+
+    @Override
+    public void executePendingTransactions() {
+        while (!pendingTransactions.isEmpty()) {
+            pendingTransactions.remove(0).run();
+        }
+        if (changed && engine != null) {
+            changed = false;
+            engine.onBackStackChanged();
+        }
+    }
+
+    @Override
+    public void popBackStack() {
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                if (entries.isEmpty()) return;
+                entries.remove(entries.size() - 1);
+                changed = true;
+            }
+        });
+    }
+
+    @Override
+    public void popBackStack(@NotNull final String name) {
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                int index = entries.lastIndexOf(name);
+                if (index != -1 && index + 1 < entries.size()) {
+                    entries.subList(index + 1, entries.size()).clear();
+                    changed = true;
+                }
+            }
+        });
+    }
+
+    @Override
+    public void popBackStackToRoot() {
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                if (entries.isEmpty()) return;
+                entries.clear();
+                changed = true;
+            }
+        });
+    }
+
+    @Override
+    public boolean isFragmentScreen(@NotNull Screen screen) {
+        return true;
+    }
+
+    @NotNull
+    @Override
+    public Screen prepareFragment(@NotNull Screen screen) {
+        preparedCount++;
+        return screen;
+    }
+
+    @Override
+    public void commitFragment(@NotNull Command command,
+                               @NotNull final Screen screen,
+                               @NotNull Screen fragment,
+                               final boolean addToBackStack,
+                               boolean reorderingAllowed) {
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                if (addToBackStack) {
+                    entries.add(screen.getScreenKey());
+                    changed = true;
+                } else {
+                    rootKey = screen.getScreenKey();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void switchStack(@NotNull Command command, @NotNull Screen screen, @Nullable String previousKey) {
+    }
+
+    /**
+     * @param engine engine to notify about back stack changes or null
+     */
+    public void setEngine(@Nullable NavigationEngine<?> engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Pops the top entry not by the engine, like the system back button.
+     */
+    public void popExternally() {
+        popBackStack();
+        executePendingTransactions();
+    }
+
+    /**
+     * @return count of back stack entry names read by the engine
+     */
+    public int getNameReadCount() {
+        return nameReadCount;
+    }
+
+    @NotNull
+    public List<String> getEntries() {
+        return entries;
+    }
+
+    @Nullable
+    public String getRootKey() {
+        return rootKey;
+    }
+
+    public int getPreparedCount() {
+        return preparedCount;
+    }
+
+    /**
+     * @return true if there are transactions which aren't executed yet
+     */
+    public boolean hasPendingTransactions() {
+        return !pendingTransactions.isEmpty();
+    }
+
+    private void enqueue(@NotNull Runnable transaction) {
+        if (async) {
+            pendingTransactions.add(transaction);
+        } else {
+            transaction.run();
+        }
+    }
+}
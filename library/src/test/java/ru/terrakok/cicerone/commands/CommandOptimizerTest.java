@@ -0,0 +1,57 @@
+package ru.terrakok.cicerone.commands;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import ru.terrakok.cicerone.memory.CountingNavigator;
+import ru.terrakok.cicerone.memory.RandomCommands;
+import ru.terrakok.cicerone.memory.TestScreen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CommandOptimizerTest {
+    private static final int ITERATIONS = 100000;
+
+    @Test
+    public void optimizedArrayIsEquivalentInScreensChainModel() {
+        RandomCommands random = new RandomCommands(42);
+        for (int i = 0; i < ITERATIONS; i++) {
+            List<Command[]> prefix = random.nextArrays(3, 4);
+            Command[] commands = random.nextArray(8);
+            Command[] optimized = CommandOptimizer.optimize(commands);
+
+            assertTrue(optimized.length <= commands.length);
+            assertEquals(
+                    "prefix " + RandomCommands.toString(prefix)
+                            + ", commands " + RandomCommands.toString(Collections.singletonList(commands)),
+                    replay(prefix, commands),
+                    replay(prefix, optimized)
+            );
+        }
+    }
+
+    @Test
+    public void unchangedArrayIsReturned() {
+        Command[] commands = {new Forward(new TestScreen("a")), new Forward(new TestScreen("b"))};
+        assertSame(commands, CommandOptimizer.optimize(commands));
+    }
+
+    @Test
+    public void finishedChainIsNotDropped() {
+        Command[] commands = {new Replace(new TestScreen("a")), new BackTo(null), new Back()};
+        assertEquals(3, CommandOptimizer.optimize(commands).length);
+    }
+
+    private static String replay(List<Command[]> prefix, Command[] commands) {
+        CountingNavigator navigator = new CountingNavigator();
+        for (Command[] array : prefix) {
+            navigator.applyCommands(array);
+        }
+        navigator.applyCommands(commands);
+        return navigator.getState();
+    }
+}
@@ -0,0 +1,42 @@
+package ru.terrakok.cicerone.memory;
+
+import org.jetbrains.annotations.NotNull;
+
+import ru.terrakok.cicerone.commands.Command;
+
+/**
+ * {@link InMemoryNavigator} which counts exits from the root screen.
+ * The root screen isn't destroyed on exit, like in a nested container.
+ */
+public class CountingNavigator extends InMemoryNavigator {
+    private int exitCount;
+
+    @Override
+    protected void exit() {
+        exitCount++;
+    }
+
+    public int getExitCount() {
+        return exitCount;
+    }
+
+    /**
+     * @return root key, screens chain and exit count
+     */
+    @NotNull
+    public String getState() {
+        return "root=" + getRootKey() + ", stack=" + getStack() + ", exits=" + exitCount;
+    }
+
+    /**
+     * Applies command arrays one by one and returns the resulting state.
+     */
+    @NotNull
+    public static String replay(@NotNull Iterable<Command[]> arrays) {
+        CountingNavigator navigator = new CountingNavigator();
+        for (Command[] commands : arrays) {
+            navigator.applyCommands(commands);
+        }
+        return navigator.getState();
+    }
+}
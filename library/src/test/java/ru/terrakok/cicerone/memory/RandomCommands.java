@@ -0,0 +1,96 @@
+package ru.terrakok.cicerone.memory;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import ru.terrakok.cicerone.Screen;
+import ru.terrakok.cicerone.commands.Back;
+import ru.terrakok.cicerone.commands.BackTo;
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.Forward;
+import ru.terrakok.cicerone.commands.Replace;
+
+/**
+ * Generates random command arrays over a few screens, so {@link BackTo} often finds its screen.
+ */
+public class RandomCommands {
+    private static final int SCREEN_COUNT = 4;
+
+    private final Random random;
+
+    public RandomCommands(long seed) {
+        random = new Random(seed);
+    }
+
+    @NotNull
+    public Command[] nextArray(int maxLength) {
+        Command[] commands = new Command[1 + random.nextInt(maxLength)];
+        for (int i = 0; i < commands.length; i++) {
+            commands[i] = nextCommand();
+        }
+        // router methods producing the new root and the finished chain
+        if (commands.length > 1 && random.nextInt(4) == 0) {
+            int index = random.nextInt(commands.length - 1);
+            commands[index] = new BackTo(null);
+            commands[index + 1] = random.nextBoolean() ? new Replace(nextScreen()) : new Back();
+        }
+        return commands;
+    }
+
+    @NotNull
+    public Command nextCommand() {
+        switch (random.nextInt(6)) {
+            case 0:
+            case 1:
+                return new Forward(nextScreen());
+            case 2:
+                return new Replace(nextScreen());
+            case 3:
+                return new BackTo(random.nextBoolean() ? nextScreen() : null);
+            default:
+                return new Back();
+        }
+    }
+
+    @NotNull
+    public List<Command[]> nextArrays(int maxCount, int maxLength) {
+        Command[][] arrays = new Command[1 + random.nextInt(maxCount)][];
+        for (int i = 0; i < arrays.length; i++) {
+            arrays[i] = nextArray(maxLength);
+        }
+        return Arrays.asList(arrays);
+    }
+
+    @NotNull
+    private Screen nextScreen() {
+        return new TestScreen("screen_" + random.nextInt(SCREEN_COUNT));
+    }
+
+    @NotNull
+    public static String toString(@NotNull Iterable<Command[]> arrays) {
+        StringBuilder builder = new StringBuilder();
+        for (Command[] commands : arrays) {
+            builder.append('[');
+            for (int i = 0; i < commands.length; i++) {
+                if (i > 0) builder.append(", ");
+                builder.append(toString(commands[i]));
+            }
+            builder.append(']');
+        }
+        return builder.toString();
+    }
+
+    @NotNull
+    private static String toString(@NotNull Command command) {
+        if (command instanceof Forward) return "Forward(" + ((Forward) command).getScreen().getScreenKey() + ")";
+        if (command instanceof Replace) return "Replace(" + ((Replace) command).getScreen().getScreenKey() + ")";
+        if (command instanceof BackTo) {
+            Screen screen = ((BackTo) command).getScreen();
+            return "BackTo(" + (screen != null ? screen.getScreenKey() : null) + ")";
+        }
+        return command.getClass().getSimpleName();
+    }
+}
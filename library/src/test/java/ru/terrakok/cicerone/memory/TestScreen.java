@@ -0,0 +1,15 @@
+package ru.terrakok.cicerone.memory;
+
+import org.jetbrains.annotations.NotNull;
+
+import ru.terrakok.cicerone.Screen;
+
+/**
+ * Screen identified by its key only.
+ */
+public final class TestScreen extends Screen {
+
+    public TestScreen(@NotNull String key) {
+        this.screenKey = key;
+    }
+}
@@ -0,0 +1,131 @@
+package ru.terrakok.cicerone.snapshot;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import ru.terrakok.cicerone.Cicerone;
+import ru.terrakok.cicerone.Router;
+import ru.terrakok.cicerone.Screen;
+import ru.terrakok.cicerone.android.NavigationEngine;
+import ru.terrakok.cicerone.android.StubFragmentBackend;
+import ru.terrakok.cicerone.commands.Command;
+import ru.terrakok.cicerone.commands.Forward;
+import ru.terrakok.cicerone.memory.CountingNavigator;
+import ru.terrakok.cicerone.memory.TestScreen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SnapshotTest {
+    private static final int DEPTH = 50;
+
+    private final ScreenCodec codec = new ScreenCodec() {
+        @Override
+        public void write(@NotNull Screen screen, @NotNull SnapshotWriter writer) {
+            writer.writeString(screen.getScreenKey());
+        }
+
+        @NotNull
+        @Override
+        public Screen read(@NotNull SnapshotReader reader) {
+            return new TestScreen(reader.readString());
+        }
+    };
+
+    @Test
+    public void ciceroneSnapshotRestoresPendingCommands() {
+        Cicerone<Router> cicerone = createWithPendingCommands();
+        Cicerone<Router> restored = Cicerone.create();
+        restored.restoreSnapshot(cicerone.createSnapshot(codec), codec);
+
+        assertEquals(navigate(cicerone), navigate(restored));
+    }
+
+    @Test
+    public void ciceroneSnapshotWithTrailingBytesIsRejected() {
+        byte[] snapshot = createWithPendingCommands().createSnapshot(codec);
+        Cicerone<Router> restored = Cicerone.create();
+        try {
+            restored.restoreSnapshot(Arrays.copyOf(snapshot, snapshot.length + 1), codec);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        assertEquals("root=null, stack=[], exits=0", navigate(restored));
+    }
+
+    @Test
+    public void engineSnapshotWithTrailingBytesIsRejected() {
+        NavigationEngine<Screen> engine = createLazyEngine();
+        SnapshotWriter writer = new SnapshotWriter(codec);
+        engine.writeSnapshot(writer);
+        byte[] snapshot = writer.toByteArray();
+
+        NavigationEngine<Screen> restored = new NavigationEngine<>(new StubFragmentBackend());
+        try {
+            restored.readSnapshot(new SnapshotReader(Arrays.copyOf(snapshot, snapshot.length + 1), codec));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(0, restored.getStack().size());
+
+        restored.readSnapshot(new SnapshotReader(snapshot, codec));
+        assertEquals(engine.getStack().toString(), restored.getStack().toString());
+    }
+
+    /**
+     * Screen keys are written once, so a deep chain of few screens costs a few bytes per screen.
+     */
+    @Test
+    public void repeatedScreensAreWrittenCompactly() {
+        int ciceroneSize = createWithPendingCommands().createSnapshot(codec).length;
+        SnapshotWriter writer = new SnapshotWriter(codec);
+        createLazyEngine().writeSnapshot(writer);
+
+        assertTrue("cicerone snapshot " + ciceroneSize + " bytes", ciceroneSize <= 4 * DEPTH + 64);
+        assertTrue("engine snapshot " + writer.size() + " bytes", writer.size() <= 4 * DEPTH + 64);
+    }
+
+    @NotNull
+    private static Cicerone<Router> createWithPendingCommands() {
+        Cicerone<Router> cicerone = Cicerone.create();
+        for (int i = 0; i < DEPTH; i++) {
+            cicerone.getRouter().navigateTo(new TestScreen("screen_" + i % 4));
+        }
+        cicerone.getRouter().exit();
+        return cicerone;
+    }
+
+    @NotNull
+    private static NavigationEngine<Screen> createLazyEngine() {
+        final NavigationEngine<Screen> engine = new NavigationEngine<>(new StubFragmentBackend());
+        engine.setLazyChains(true);
+        Command[] chain = new Command[DEPTH];
+        for (int i = 0; i < DEPTH; i++) {
+            chain[i] = new Forward(new TestScreen("screen_" + i % 4));
+        }
+        engine.beginBatch();
+        engine.applyPlan(chain, new NavigationEngine.CommandApplier() {
+            @Override
+            public void applyCommand(@NotNull Command command) {
+                engine.forward(command, ((Forward) command).getScreen());
+            }
+
+            @Override
+            public void errorOnApplyCommand(@NotNull Command command, @NotNull RuntimeException error) {
+                throw error;
+            }
+        });
+        return engine;
+    }
+
+    @NotNull
+    private static String navigate(@NotNull Cicerone<Router> cicerone) {
+        CountingNavigator navigator = new CountingNavigator();
+        cicerone.getNavigatorHolder().setNavigator(navigator);
+        return navigator.getState();
+    }
+}
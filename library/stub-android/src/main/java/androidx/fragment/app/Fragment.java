@@ -36,4 +36,16 @@ public class Fragment {
 	public final FragmentActivity getActivity() {
 		throw new RuntimeException("Stub!");
 	}
+
+	final public int getId() {
+		throw new RuntimeException("Stub!");
+	}
+
+	final public boolean isAdded() {
+		throw new RuntimeException("Stub!");
+	}
+
+	final public boolean isHidden() {
+		throw new RuntimeException("Stub!");
+	}
 }
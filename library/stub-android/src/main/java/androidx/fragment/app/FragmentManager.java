@@ -1,5 +1,7 @@
 package androidx.fragment.app;
 
+import java.util.List;
+
 /**
  * Created by Konstantin Tckhovrebov (aka @terrakok)
  * on 11.10.16
@@ -36,6 +38,26 @@ public class FragmentManager {
         throw new RuntimeException("Stub!");
     }
 
+    public Fragment findFragmentByTag(String tag) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public List<Fragment> getFragments() {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void addOnBackStackChangedListener(OnBackStackChangedListener listener) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void removeOnBackStackChangedListener(OnBackStackChangedListener listener) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public interface OnBackStackChangedListener {
+        void onBackStackChanged();
+    }
+
     public interface BackStackEntry {
         int getId();
 
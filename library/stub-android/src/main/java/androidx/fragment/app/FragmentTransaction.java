@@ -19,6 +19,10 @@ public class FragmentTransaction {
         throw new RuntimeException("Stub!");
     }
 
+    public FragmentTransaction setReorderingAllowed(boolean reorderingAllowed) {
+        throw new RuntimeException("Stub!");
+    }
+
     public FragmentTransaction addToBackStack(String name) {
         throw new RuntimeException("Stub!");
     }
@@ -26,4 +30,20 @@ public class FragmentTransaction {
     public int commit() {
         throw new RuntimeException("Stub!");
     }
+
+    public FragmentTransaction add(int containerViewId, Fragment fragment, String tag) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public FragmentTransaction hide(Fragment fragment) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public FragmentTransaction show(Fragment fragment) {
+        throw new RuntimeException("Stub!");
+    }
+
+    public void commitNow() {
+        throw new RuntimeException("Stub!");
+    }
 }
@@ -27,13 +27,18 @@ public class Screens {
 
         public SampleScreen(int number) {
             this.number = number;
-            this.screenKey = getClass().getSimpleName() + "_" + number;
+            this.screenKey = "SampleScreen_" + number;
         }
 
         @Override
         public Fragment getFragment() {
             return SampleFragment.getNewInstance(number);
         }
+
+        @Override
+        public String getArgumentsKey() {
+            return String.valueOf(number);
+        }
     }
 
     public static final class StartScreen extends SupportAppScreen {
@@ -62,6 +67,7 @@ public class Screens {
 
         public TabScreen(String tabName) {
             this.tabName = tabName;
+            this.screenKey = tabName;
         }
 
         @Override
@@ -83,6 +89,11 @@ public class Screens {
         public Fragment getFragment() {
             return ForwardFragment.getNewInstance(containerName, number);
         }
+
+        @Override
+        public String getArgumentsKey() {
+            return containerName + "_" + number;
+        }
     }
 
     public static final class GithubScreen extends SupportAppScreen {
@@ -1,5 +1,10 @@
 package ru.terrakok.cicerone.sample.dagger.module;
 
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
 import javax.inject.Singleton;
 
 import dagger.Module;
@@ -17,7 +22,13 @@ public class NavigationModule {
     private Cicerone<Router> cicerone;
 
     public NavigationModule() {
-        cicerone = Cicerone.create();
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        cicerone = Cicerone.create(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mainHandler.post(command);
+            }
+        });
     }
 
     @Provides
@@ -17,6 +17,6 @@ public class BottomNavigationPresenter extends MvpPresenter<BottomNavigationView
     }
 
     public void onBackPressed() {
-        router.exit();
+        router.onBackPressed();
     }
 }
@@ -1,8 +1,5 @@
 package ru.terrakok.cicerone.sample.mvp.main;
 
-import android.os.Handler;
-import android.os.Looper;
-
 import com.arellomobile.mvp.InjectViewState;
 import com.arellomobile.mvp.MvpPresenter;
 
@@ -67,15 +64,8 @@ public class SamplePresenter extends MvpPresenter<SampleView> {
         future = executorService.schedule(new Runnable() {
             @Override
             public void run() {
-                //WARNING! Navigation must be only in UI thread.
-                new Handler(Looper.getMainLooper()).post(
-                        new Runnable() {
-                            @Override
-                            public void run() {
-                                router.navigateTo(new Screens.SampleScreen(screenNumber + 1));
-                            }
-                        }
-                );
+                //Router is created with the main executor so it can be called from any thread
+                router.navigateTo(new Screens.SampleScreen(screenNumber + 1));
             }
         }, 5, TimeUnit.SECONDS);
     }
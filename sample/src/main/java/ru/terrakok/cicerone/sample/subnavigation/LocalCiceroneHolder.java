@@ -1,24 +1,23 @@
 package ru.terrakok.cicerone.sample.subnavigation;
 
-import java.util.HashMap;
-
 import ru.terrakok.cicerone.Cicerone;
+import ru.terrakok.cicerone.CiceroneRegistry;
 import ru.terrakok.cicerone.Router;
 
 /**
  * Created by terrakok 27.11.16
  */
 public class LocalCiceroneHolder {
-    private HashMap<String, Cicerone<Router>> containers;
+    private static final int MAX_DETACHED_CONTAINERS = 8;
+
+    private CiceroneRegistry<Router> containers;
 
     public LocalCiceroneHolder() {
-        containers = new HashMap<>();
+        containers = CiceroneRegistry.create();
+        containers.setMaxDetachedContainers(MAX_DETACHED_CONTAINERS);
     }
 
     public Cicerone<Router> getCicerone(String containerTag) {
-        if (!containers.containsKey(containerTag)) {
-            containers.put(containerTag, Cicerone.create());
-        }
         return containers.get(containerTag);
     }
 }
@@ -1,9 +1,6 @@
 package ru.terrakok.cicerone.sample.ui.bottom;
 
 import android.os.Bundle;
-import androidx.fragment.app.Fragment;
-import androidx.fragment.app.FragmentManager;
-import androidx.fragment.app.FragmentTransaction;
 
 import com.arellomobile.mvp.MvpAppCompatActivity;
 import com.arellomobile.mvp.presenter.InjectPresenter;
@@ -11,17 +8,16 @@ import com.arellomobile.mvp.presenter.ProvidePresenter;
 import com.ashokvarma.bottomnavigation.BottomNavigationBar;
 import com.ashokvarma.bottomnavigation.BottomNavigationItem;
 
-import java.util.List;
-
 import javax.inject.Inject;
 
+import ru.terrakok.cicerone.NavigatorHolder;
 import ru.terrakok.cicerone.Router;
+import ru.terrakok.cicerone.android.support.SupportAppNavigator;
 import ru.terrakok.cicerone.sample.R;
 import ru.terrakok.cicerone.sample.SampleApplication;
 import ru.terrakok.cicerone.sample.Screens;
 import ru.terrakok.cicerone.sample.mvp.bottom.BottomNavigationPresenter;
 import ru.terrakok.cicerone.sample.mvp.bottom.BottomNavigationView;
-import ru.terrakok.cicerone.sample.ui.common.BackButtonListener;
 import ru.terrakok.cicerone.sample.ui.common.RouterProvider;
 
 /**
@@ -34,6 +30,11 @@ public class BottomNavigationActivity extends MvpAppCompatActivity
     @Inject
     Router router;
 
+    @Inject
+    NavigatorHolder navigatorHolder;
+
+    private SupportAppNavigator navigator;
+
     @InjectPresenter
     BottomNavigationPresenter presenter;
 
@@ -48,6 +49,7 @@ public class BottomNavigationActivity extends MvpAppCompatActivity
         super.onCreate(savedInstanceState);
 
         setContentView(R.layout.activity_bottom);
+        navigator = new SupportAppNavigator(this, R.id.ab_container);
         bottomNavigationBar = (BottomNavigationBar) findViewById(R.id.ab_bottom_navigation_bar);
 
         initViews();
@@ -94,56 +96,24 @@ public class BottomNavigationActivity extends MvpAppCompatActivity
     }
 
     private void selectTab(String tab) {
-        FragmentManager fm = getSupportFragmentManager();
-        Fragment currentFragment = null;
-        List<Fragment> fragments = fm.getFragments();
-        if (fragments != null) {
-            for (Fragment f : fragments) {
-                if (f.isVisible()) {
-                    currentFragment = f;
-                    break;
-                }
-            }
-        }
-        Fragment newFragment = fm.findFragmentByTag(tab);
-
-        if (currentFragment != null && newFragment != null && currentFragment == newFragment) return;
-
-        FragmentTransaction transaction = fm.beginTransaction();
-        if (newFragment == null) {
-            transaction.add(R.id.ab_container, new Screens.TabScreen(tab).getFragment(), tab);
-        }
+        router.switchStack(new Screens.TabScreen(tab));
+    }
 
-        if (currentFragment != null) {
-            transaction.hide(currentFragment);
-        }
+    @Override
+    protected void onResumeFragments() {
+        super.onResumeFragments();
+        navigatorHolder.setNavigator(navigator);
+    }
 
-        if (newFragment != null) {
-            transaction.show(newFragment);
-        }
-        transaction.commitNow();
+    @Override
+    protected void onPause() {
+        navigatorHolder.removeNavigator();
+        super.onPause();
     }
 
     @Override
     public void onBackPressed() {
-        FragmentManager fm = getSupportFragmentManager();
-        Fragment fragment = null;
-        List<Fragment> fragments = fm.getFragments();
-        if (fragments != null) {
-            for (Fragment f : fragments) {
-                if (f.isVisible()) {
-                    fragment = f;
-                    break;
-                }
-            }
-        }
-        if (fragment != null
-                && fragment instanceof BackButtonListener
-                && ((BackButtonListener) fragment).onBackPressed()) {
-            return;
-        } else {
-            presenter.onBackPressed();
-        }
+        presenter.onBackPressed();
     }
 
     @Override
@@ -17,13 +17,12 @@ import ru.terrakok.cicerone.sample.R;
 import ru.terrakok.cicerone.sample.SampleApplication;
 import ru.terrakok.cicerone.sample.Screens;
 import ru.terrakok.cicerone.sample.subnavigation.LocalCiceroneHolder;
-import ru.terrakok.cicerone.sample.ui.common.BackButtonListener;
 import ru.terrakok.cicerone.sample.ui.common.RouterProvider;
 
 /**
  * Created by terrakok 25.11.16
  */
-public class TabContainerFragment extends Fragment implements RouterProvider, BackButtonListener {
+public class TabContainerFragment extends Fragment implements RouterProvider {
     private static final String EXTRA_NAME = "tcf_extra_name";
 
     private Navigator navigator;
@@ -74,14 +73,32 @@ public class TabContainerFragment extends Fragment implements RouterProvider, Ba
     public void onResume() {
         super.onResume();
         getCicerone().getNavigatorHolder().setNavigator(getNavigator());
+        if (!isHidden()) {
+            getParentRouter().setActiveChild(getRouter());
+        }
     }
 
     @Override
     public void onPause() {
+        getParentRouter().clearActiveChild(getRouter());
         getCicerone().getNavigatorHolder().removeNavigator();
         super.onPause();
     }
 
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        if (hidden) {
+            getParentRouter().clearActiveChild(getRouter());
+        } else {
+            getParentRouter().setActiveChild(getRouter());
+        }
+    }
+
+    private Router getParentRouter() {
+        return ((RouterProvider) getActivity()).getRouter();
+    }
+
     private Navigator getNavigator() {
         if (navigator == null) {
             navigator = new SupportAppNavigator(getActivity(), getChildFragmentManager(), R.id.ftc_container);
@@ -93,17 +110,4 @@ public class TabContainerFragment extends Fragment implements RouterProvider, Ba
     public Router getRouter() {
         return getCicerone().getRouter();
     }
-
-    @Override
-    public boolean onBackPressed() {
-        Fragment fragment = getChildFragmentManager().findFragmentById(R.id.ftc_container);
-        if (fragment != null
-                && fragment instanceof BackButtonListener
-                && ((BackButtonListener) fragment).onBackPressed()) {
-            return true;
-        } else {
-            ((RouterProvider) getActivity()).getRouter().exit();
-            return true;
-        }
-    }
 }